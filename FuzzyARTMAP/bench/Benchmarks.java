@@ -0,0 +1,608 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of the Fuzzy ARTMAP and MOGFAM hot paths. Each benchmark runs warmup iterations and
+ * then measurement iterations of fixed duration, and reports the mean time per operation with its
+ * 99.9% error, the bytes allocated per operation (by all threads) and the number of collections.
+ *
+ * Inputs are synthetic and seeded, so every run measures the same work: data sets of uniform
+ * features labeled by quadrant (four labels), complement coded, and networks of random boxes with
+ * the labels dealt in turn. Benchmarks are parameterized by category count, input dimensions
+ * (features before complement coding) and data set size where those affect their cost.
+ *
+ * Every combination of a benchmark and its parameters is measured in forks, fresh JVMs started
+ * with the JVM options and class path of this one, so that the JIT profiles and heap left by one
+ * case cannot skew the next. The iterations of all forks of a case are reported together.
+ *
+ * Run from the Maven build, which compiles src and bench together:
+ *   mvn test-compile exec:exec@benchmarks -Dbenchmark.args="[regex] [options]"
+ * or compile and run alongside the sources:
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out Benchmarks [regex] [-p name=v1,v2] [-wi warmups] [-i iterations] [-t milliseconds] [-f forks]
+ * The regex selects benchmarks by name, -p replaces the values of a parameter, -f sets the number
+ * of forks per case (0 measures every case in this JVM).
+ */
+public class Benchmarks
+{
+    private static int WARMUP_ITERATIONS = 3;
+    private static int ITERATIONS = 5;
+    private static long ITERATION_MILLIS = 1000;
+    private static int FORKS = 1;
+
+    //Set in forks, which print the raw results of their single case for the parent to read
+    private static boolean RAW = false;
+    private static String RAW_PREFIX = "RESULT ";
+
+    private static double CHOICE_PARAM = 0.01;
+    private static double MUTATION_PARAM = 0.00005;
+    private static int POPULATION_SIZE = 20;
+
+    private static Map<String, int[]> PARAMS = new LinkedHashMap<String, int[]>();
+    static
+    {
+        PARAMS.put("categories", new int[] { 64, 1024 });
+        PARAMS.put("dims", new int[] { 4, 32 });
+        PARAMS.put("size", new int[] { 1000, 10000 });
+        PARAMS.put("population", new int[] { 40, 400 });
+    }
+
+    //Results of every operation are written here, so that no work can be optimized away
+    private static volatile double sink;
+
+    /**
+     * A single operation of a benchmark, set up for one combination of parameters
+     */
+    private interface Operation
+    {
+        double Run();
+    }
+
+    /**
+     * Measurements of one case in one JVM
+     */
+    private static class Result
+    {
+        private double[] nanosPerOperation;
+        private long operations;
+        private long allocated;
+        private long collections;
+    }
+
+    /**
+     * A benchmark that creates its operation for one combination of parameters
+     */
+    private static abstract class Benchmark
+    {
+        private String name;
+        private String[] params;
+
+        private Benchmark(String name, String... params)
+        {
+            this.name = name;
+            this.params = params;
+        }
+
+        abstract Operation Setup(Map<String, Integer> values);
+    }
+
+    public static void main(String[] args)
+    {
+        Pattern filter = Pattern.compile(".*");
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-p") && i + 1 < args.length)
+            {
+                String[] param = args[++i].split("=");
+                String[] values = param[1].split(",");
+                int[] parsed = new int[values.length];
+                for (int j = 0; j < values.length; j++)
+                    parsed[j] = Integer.parseInt(values[j]);
+                PARAMS.put(param[0], parsed);
+            }
+            else if (args[i].equals("-wi") && i + 1 < args.length)
+                WARMUP_ITERATIONS = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-i") && i + 1 < args.length)
+                ITERATIONS = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-t") && i + 1 < args.length)
+                ITERATION_MILLIS = Long.parseLong(args[++i]);
+            else if (args[i].equals("-f") && i + 1 < args.length)
+                FORKS = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-raw"))
+                RAW = true;
+            else
+                filter = Pattern.compile(args[i]);
+        }
+
+        if (!RAW)
+            System.out.println(String.format("%-16s %-36s %14s %12s %14s %6s", "Benchmark", "Params", "ns/op", "error", "B/op", "gc"));
+        for (Benchmark benchmark : CreateBenchmarks())
+        {
+            if (!filter.matcher(benchmark.name).find())
+                continue;
+
+            for (Map<String, Integer> values : Combinations(benchmark.params))
+            {
+                if (FORKS > 0)
+                {
+                    Print(benchmark, values, Fork(benchmark, values));
+                    continue;
+                }
+
+                Result result = Measure(benchmark, values);
+                if (RAW)
+                {
+                    StringBuilder line = new StringBuilder(RAW_PREFIX);
+                    line.append(result.operations).append(' ').append(result.allocated).append(' ').append(result.collections);
+                    for (double value : result.nanosPerOperation)
+                        line.append(' ').append(value);
+                    System.out.println(line);
+                }
+                else
+                {
+                    List<Result> results = new ArrayList<Result>();
+                    results.add(result);
+                    Print(benchmark, values, results);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures one case in FORKS fresh JVMs, one after another
+     * @param benchmark
+     * @param values
+     * @return the results of each fork
+     */
+    private static List<Result> Fork(Benchmark benchmark, Map<String, Integer> values)
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmarks.class.getName());
+        command.add("^" + Pattern.quote(benchmark.name) + "$");
+        for (Map.Entry<String, Integer> value : values.entrySet())
+        {
+            command.add("-p");
+            command.add(value.getKey() + "=" + value.getValue());
+        }
+        command.add("-wi");
+        command.add(Integer.toString(WARMUP_ITERATIONS));
+        command.add("-i");
+        command.add(Integer.toString(ITERATIONS));
+        command.add("-t");
+        command.add(Long.toString(ITERATION_MILLIS));
+        command.add("-f");
+        command.add("0");
+        command.add("-raw");
+
+        List<Result> results = new ArrayList<Result>();
+        for (int fork = 0; fork < FORKS; fork++)
+        {
+            Result result = null;
+            int exitCode;
+            try
+            {
+                Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                for (String line = reader.readLine(); line != null; line = reader.readLine())
+                {
+                    if (!line.startsWith(RAW_PREFIX))
+                        continue;
+
+                    String[] fields = line.substring(RAW_PREFIX.length()).split(" ");
+                    result = new Result();
+                    result.operations = Long.parseLong(fields[0]);
+                    result.allocated = Long.parseLong(fields[1]);
+                    result.collections = Long.parseLong(fields[2]);
+                    result.nanosPerOperation = new double[fields.length - 3];
+                    for (int i = 3; i < fields.length; i++)
+                        result.nanosPerOperation[i - 3] = Double.parseDouble(fields[i]);
+                }
+                exitCode = process.waitFor();
+            } catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            if (exitCode != 0 || result == null)
+                throw new RuntimeException("Fork of " + benchmark.name + " " + values + " failed with exit code " + exitCode);
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    private static List<Benchmark> CreateBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        //Choice values of every category for one input, computed by CategorySearch.Begin and read
+        //through CategorySearch.GetActivation
+        benchmarks.add(new Benchmark("Activation", "categories", "dims") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final FuzzyARTMAP fartmap = CreateNetwork(values.get("categories"), values.get("dims"), new Random(1));
+                final Dataset inputs = CreateDataset(256, values.get("dims"), new Random(2));
+                final CategorySearch search = new CategorySearch();
+                return new Operation() {
+                    private int next = 0;
+
+                    @Override
+                    public double Run() {
+                        int i = next++ % inputs.Size();
+                        CategoryStore nodes = fartmap.GetCategoryStore();
+                        search.Begin(nodes, inputs.GetPatterns(), inputs.Offset(i), inputs.Dimensions(), CHOICE_PARAM);
+                        double sum = 0;
+                        for (int node = 0; node < nodes.Size(); node++)
+                            sum += search.GetActivation(node);
+                        return sum;
+                    }
+                };
+            }
+        });
+
+        //Training a network from scratch, as the constructor does for the initial population
+        benchmarks.add(new Benchmark("Train", "dims", "size") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final Dataset trainingSet = CreateDataset(values.get("size"), values.get("dims"), new Random(2));
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        return new FuzzyARTMAP(trainingSet, CHOICE_PARAM, 0.5).Size();
+                    }
+                };
+            }
+        });
+
+        benchmarks.add(new Benchmark("Validate", "categories", "dims", "size") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final FuzzyARTMAP fartmap = CreateNetwork(values.get("categories"), values.get("dims"), new Random(1));
+                final Dataset validationSet = CreateDataset(values.get("size"), values.get("dims"), new Random(3));
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        return fartmap.Validate(validationSet);
+                    }
+                };
+            }
+        });
+
+        //SPEA2 strength and fitness of P + A
+        benchmarks.add(new Benchmark("ComputeFitness", "population") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                Random random = new Random(4);
+                final ArrayList<Chromosome> chromos = new ArrayList<Chromosome>();
+                for (int i = 0; i < values.get("population"); i++)
+                {
+                    FuzzyARTMAP fartmap = new FuzzyARTMAP(CHOICE_PARAM, 0.5);
+                    chromos.add(new Chromosome(fartmap, random.nextDouble(), 1 + random.nextInt(50), 0, 0, false));
+                }
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        MOGFAM.ComputeFitness(chromos);
+                        return chromos.get(0).GetFitness();
+                    }
+                };
+            }
+        });
+
+        //Genetic operators on a copy of a validated chromosome, as in selection
+        benchmarks.add(new Benchmark("DoPrune", "categories", "dims") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final Chromosome chromo = CreateChromosome(values, new Random(1));
+                final Random random = new Random(5);
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        Chromosome copy = new Chromosome(chromo);
+                        copy.DoPrune(random);
+                        return copy.GetFuzzyARTMAP().Size();
+                    }
+                };
+            }
+        });
+
+        benchmarks.add(new Benchmark("DoMutation", "categories", "dims") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final Chromosome chromo = CreateChromosome(values, new Random(1));
+                final Random random = new Random(5);
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        Chromosome copy = new Chromosome(chromo);
+                        copy.DoMutation(random, MUTATION_PARAM);
+                        return copy.GetFuzzyARTMAP().GetCategoryStore().GetWeightSum(0);
+                    }
+                };
+            }
+        });
+
+        benchmarks.add(new Benchmark("DoCrossover", "categories", "dims") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final Chromosome chromoA = CreateChromosome(values, new Random(1));
+                final Chromosome chromoB = CreateChromosome(values, new Random(6));
+                final Random random = new Random(5);
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        Chromosome child = Chromosome.DoCrossover(random, Chromosome.CrossoverType.CrossoverLabels,
+                                chromoA, chromoB, CHOICE_PARAM);
+                        return child.GetFuzzyARTMAP().Size();
+                    }
+                };
+            }
+        });
+
+        //The baseline of the operator benchmarks
+        benchmarks.add(new Benchmark("CopyChromosome", "categories", "dims") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final Chromosome chromo = CreateChromosome(values, new Random(1));
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        return new Chromosome(chromo).GetFuzzyARTMAP().Size();
+                    }
+                };
+            }
+        });
+
+        //One full MOGFAM generation of POPULATION_SIZE chromosomes, starting with an empty archive
+        benchmarks.add(new Benchmark("Generation", "categories", "dims", "size") {
+            @Override
+            Operation Setup(Map<String, Integer> values)
+            {
+                final Dataset validationSet = CreateDataset(values.get("size"), values.get("dims"), new Random(3));
+                Random random = new Random(7);
+                final ArrayList<Chromosome> population = new ArrayList<Chromosome>();
+                for (int i = 0; i < POPULATION_SIZE; i++)
+                {
+                    FuzzyARTMAP fartmap = CreateNetwork(values.get("categories"), values.get("dims"), random);
+                    population.add(new Chromosome(fartmap, 0, 0, 0, 0, false));
+                }
+                final Random generationRandom = new Random(5);
+                return new Operation() {
+                    @Override
+                    public double Run() {
+                        ArrayList<Chromosome> P = new ArrayList<Chromosome>();
+                        for (Chromosome chromo : population)
+                            P.add(new Chromosome(chromo));
+                        return MOGFAM.EvolveGeneration(P, generationRandom, validationSet).size();
+                    }
+                };
+            }
+        });
+
+        return benchmarks;
+    }
+
+    private static Result Measure(Benchmark benchmark, Map<String, Integer> values)
+    {
+        Operation operation = benchmark.Setup(values);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            Iterate(operation);
+
+        double[] nanosPerOperation = new double[ITERATIONS];
+        long operations = 0;
+        long allocated = AllocatedBytes();
+        long collections = GarbageCollections();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            long[] result = Iterate(operation);
+            operations += result[0];
+            nanosPerOperation[i] = (double)result[1] / result[0];
+        }
+        allocated = AllocatedBytes() - allocated;
+        collections = GarbageCollections() - collections;
+
+        Result result = new Result();
+        result.nanosPerOperation = nanosPerOperation;
+        result.operations = operations;
+        result.allocated = allocated;
+        result.collections = collections;
+        return result;
+    }
+
+    /**
+     * Prints the iterations of every fork of a case as one line
+     * @param benchmark
+     * @param values
+     * @param results
+     */
+    private static void Print(Benchmark benchmark, Map<String, Integer> values, List<Result> results)
+    {
+        int count = 0;
+        long operations = 0;
+        long allocated = 0;
+        long collections = 0;
+        double mean = 0;
+        for (Result result : results)
+        {
+            for (double value : result.nanosPerOperation)
+                mean += value;
+            count += result.nanosPerOperation.length;
+            operations += result.operations;
+            allocated += result.allocated;
+            collections += result.collections;
+        }
+        mean /= count;
+
+        double variance = 0;
+        for (Result result : results)
+            for (double value : result.nanosPerOperation)
+                variance += (value - mean) * (value - mean);
+        variance /= Math.max(count - 1, 1);
+        //3.29 standard errors, the 99.9% interval of a normal distribution
+        double error = 3.29 * Math.sqrt(variance / count);
+
+        System.out.println(String.format("%-16s %-36s %14.1f %12.1f %14.1f %6d", benchmark.name,
+                values.toString(), mean, error, (double)allocated / operations, collections));
+    }
+
+    /**
+     * Runs the operation for one iteration
+     * @param operation
+     * @return the number of operations and the elapsed nanoseconds
+     */
+    private static long[] Iterate(Operation operation)
+    {
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + ITERATION_MILLIS * 1000000L;
+        long now;
+        do
+        {
+            sink += operation.Run();
+            operations++;
+            now = System.nanoTime();
+        } while (now < end);
+
+        return new long[] { operations, now - start };
+    }
+
+    /**
+     * Returns the bytes allocated so far by all live threads, so that work done by the evaluation
+     * pool is included
+     * @return
+     */
+    private static long AllocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+            if (allocated > 0)
+                total += allocated;
+
+        return total;
+    }
+
+    private static long GarbageCollections()
+    {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(collector.getCollectionCount(), 0);
+
+        return total;
+    }
+
+    /**
+     * Returns every combination of the values of the given parameters
+     * @param params
+     * @return
+     */
+    private static List<Map<String, Integer>> Combinations(String[] params)
+    {
+        List<Map<String, Integer>> combinations = new ArrayList<Map<String, Integer>>();
+        combinations.add(new LinkedHashMap<String, Integer>());
+        for (String param : params)
+        {
+            List<Map<String, Integer>> extended = new ArrayList<Map<String, Integer>>();
+            for (Map<String, Integer> combination : combinations)
+            {
+                for (int value : PARAMS.get(param))
+                {
+                    Map<String, Integer> values = new LinkedHashMap<String, Integer>(combination);
+                    values.put(param, value);
+                    extended.add(values);
+                }
+            }
+            combinations = extended;
+        }
+
+        return combinations;
+    }
+
+    /**
+     * Creates a data set of uniform features labeled by the quadrant of the first two
+     * @param size
+     * @param features
+     * @param random
+     * @return
+     */
+    static Dataset CreateDataset(int size, int features, Random random)
+    {
+        double[][] columns = new double[features][size];
+        int[] labels = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            for (int k = 0; k < features; k++)
+                columns[k][i] = random.nextDouble();
+            labels[i] = (columns[0][i] < 0.5 ? 0 : 1) + (features > 1 && columns[1][i] < 0.5 ? 0 : 2);
+        }
+
+        return Dataset.FromColumns(columns, labels);
+    }
+
+    /**
+     * Creates a network of random boxes [u, v], complement coded as [u, 1-v]
+     * @param categories
+     * @param features
+     * @param random
+     * @return
+     */
+    static FuzzyARTMAP CreateNetwork(int categories, int features, Random random)
+    {
+        FuzzyARTMAP fartmap = new FuzzyARTMAP(CHOICE_PARAM, Chromosome.GetRandomBaselineVigilanceParameter(random));
+        double[] weights = new double[2 * features];
+        for (int i = 0; i < categories; i++)
+        {
+            for (int k = 0; k < features; k++)
+            {
+                double u = 0.8 * random.nextDouble();
+                weights[k] = u;
+                weights[features + k] = 1.0 - (u + 0.2 * random.nextDouble());
+            }
+            fartmap.GetCategoryStore().Add(weights, i % 4);
+        }
+
+        return fartmap;
+    }
+
+    /**
+     * Creates a chromosome with a random network whose node statistics come from a validation
+     * @param values
+     * @param random
+     * @return
+     */
+    private static Chromosome CreateChromosome(Map<String, Integer> values, Random random)
+    {
+        FuzzyARTMAP fartmap = CreateNetwork(values.get("categories"), values.get("dims"), random);
+        Chromosome chromo = new Chromosome(fartmap, 0, 0, 0, 0, false);
+        chromo.ComputeObjectiveValues(CreateDataset(1000, values.get("dims"), new Random(3)));
+        return chromo;
+    }
+}
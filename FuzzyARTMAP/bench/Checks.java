@@ -0,0 +1,190 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Checks of properties of the Fuzzy ARTMAP hot paths that the benchmarks only measure, such as
+ * the allocation of validation and training not growing with the number of patterns. Each check
+ * prints PASS or FAIL with the values it compared, and the process exits with status 1 if any
+ * check fails. Inputs are the seeded synthetic data sets and networks of {@link Benchmarks}.
+ *
+ * The Maven build runs every check in its test phase and fails if any fails:
+ *   mvn test [-Dchecks.args=regex]
+ * or compile and run alongside the sources:
+ *   javac -d out src/*.java bench/*.java
+ *   java -ea -cp out Checks [regex]
+ * The regex selects checks by name.
+ */
+public class Checks
+{
+    //Allocation per presented pattern at or above which an allocation check fails. Any object
+    //allocated per pattern takes at least 16 bytes.
+    private static double MAX_BYTES_PER_PATTERN = 1.0;
+
+    /**
+     * A named check, returns null if it passes and a description of the failure otherwise
+     */
+    private static abstract class Check
+    {
+        private String name;
+
+        private Check(String name)
+        {
+            this.name = name;
+        }
+
+        abstract String Run();
+    }
+
+    public static void main(String[] args)
+    {
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+
+        int failures = 0;
+        for (Check check : CreateChecks())
+        {
+            if (!filter.matcher(check.name).find())
+                continue;
+
+            String failure = check.Run();
+            System.out.println(String.format("%-28s %s", check.name, failure == null ? "PASS" : "FAIL " + failure));
+            if (failure != null)
+                failures++;
+        }
+
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    private static List<Check> CreateChecks()
+    {
+        List<Check> checks = new ArrayList<Check>();
+
+        //Slow learning without an epoch cap or convergence tolerance must reach an epoch without
+        //updates, and an epoch over the converged network must leave its nodes as they are
+        for (final double learningRate : new double[] { 0.3, 0.7 })
+        {
+            checks.add(new Check("SlowLearningConverges/" + learningRate) {
+                @Override
+                String Run() {
+                    int limit = 10000;
+                    Dataset trainingSet = Benchmarks.CreateDataset(1000, 2, new Random(4));
+                    FuzzyARTMAP fartmap = new FuzzyARTMAP(0.01, 0.75);
+                    fartmap.SetLearningRate(learningRate);
+
+                    //The cap only keeps a failing check from running forever
+                    fartmap.SetMaxEpochs(limit);
+                    int epochs = fartmap.Train(trainingSet);
+                    List<TrainingEpoch> history = fartmap.GetTrainingEpochs();
+                    TrainingEpoch last = history.get(history.size() - 1);
+                    if (epochs >= limit || last.GetUpdates() > 0 || last.GetCategoriesCreated() > 0)
+                        return "epochs=" + epochs + " lastUpdates=" + last.GetUpdates()
+                                + " lastCategoriesCreated=" + last.GetCategoriesCreated();
+
+                    CategoryStore nodes = fartmap.GetCategoryStore();
+                    double[] weights = Arrays.copyOf(nodes.GetWeights(), nodes.Size() * nodes.Dimensions());
+                    if (fartmap.TrainEpoch(trainingSet))
+                        return "converged network updated by a further epoch";
+                    if (!Arrays.equals(weights, Arrays.copyOf(nodes.GetWeights(), weights.length)))
+                        return "converged network reordered by a further epoch";
+
+                    return null;
+                }
+            });
+        }
+
+        //Validation and training epochs must allocate a constant amount per call, however many
+        //patterns are presented, measured on this thread for n and 10n patterns
+        for (final int dims : new int[] { 4, 16 })
+        {
+            checks.add(new Check("ValidateAllocation/" + dims) {
+                @Override
+                String Run() {
+                    final FuzzyARTMAP fartmap = Benchmarks.CreateNetwork(64, dims, new Random(1));
+                    final Dataset small = Benchmarks.CreateDataset(500, dims, new Random(3));
+                    final Dataset large = Benchmarks.CreateDataset(5000, dims, new Random(3));
+                    return CheckAllocation(new Runnable() {
+                        @Override
+                        public void run() {
+                            fartmap.Validate(small);
+                        }
+                    }, new Runnable() {
+                        @Override
+                        public void run() {
+                            fartmap.Validate(large);
+                        }
+                    }, large.Size() - small.Size());
+                }
+            });
+
+            //A network trained to convergence on the larger set, whose first rows are the smaller
+            //set, so that neither epoch updates it
+            checks.add(new Check("TrainEpochAllocation/" + dims) {
+                @Override
+                String Run() {
+                    final Dataset small = Benchmarks.CreateDataset(500, dims, new Random(3));
+                    final Dataset large = Benchmarks.CreateDataset(5000, dims, new Random(3));
+                    final FuzzyARTMAP fartmap = new FuzzyARTMAP(large, 0.01, 0.5);
+                    return CheckAllocation(new Runnable() {
+                        @Override
+                        public void run() {
+                            fartmap.TrainEpoch(small);
+                        }
+                    }, new Runnable() {
+                        @Override
+                        public void run() {
+                            fartmap.TrainEpoch(large);
+                        }
+                    }, large.Size() - small.Size());
+                }
+            });
+        }
+
+        return checks;
+    }
+
+    /**
+     * Compares the bytes allocated by this thread for an operation on few and on many patterns, after
+     * warming both up. The least of several measurements is used, since the JIT and the profiler can
+     * allocate on this thread too.
+     * @param few
+     * @param many
+     * @param extraPatterns number of patterns many presents beyond few
+     * @return null if the extra patterns allocate less than MAX_BYTES_PER_PATTERN each, a
+     * description of the allocation otherwise
+     */
+    private static String CheckAllocation(Runnable few, Runnable many, int extraPatterns)
+    {
+        for (int i = 0; i < 5; i++)
+        {
+            few.run();
+            many.run();
+        }
+
+        long fewBytes = Long.MAX_VALUE;
+        long manyBytes = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++)
+        {
+            fewBytes = Math.min(fewBytes, AllocatedBytes(few));
+            manyBytes = Math.min(manyBytes, AllocatedBytes(many));
+        }
+
+        double perPattern = (double)(manyBytes - fewBytes) / extraPatterns;
+        if (perPattern < MAX_BYTES_PER_PATTERN)
+            return null;
+
+        return String.format("%d B for few patterns, %d B for many, %.2f B per extra pattern", fewBytes, manyBytes, perPattern);
+    }
+
+    private static long AllocatedBytes(Runnable operation)
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(thread);
+        operation.run();
+        return threads.getThreadAllocatedBytes(thread) - start;
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Spatial index over the categories of a {@link CategoryStore}. With complement coding the weights
+ * of a category are the hyperbox [u, v] written as [u, 1-v], so the categories are grouped into
+ * pages like the leaves of an R-tree, and each page keeps the per-dimension minimum and maximum of
+ * the weights of its categories.
+ *
+ * Since min(I_d, w_d) <= min(I_d, max_d) for every category of a page, the sum over d of
+ * min(I_d, max_d) bounds |I ^ w| from above for the whole page, and a page whose bound fails the
+ * vigilance test is skipped without scoring its categories. This bound is the enlargement bound of
+ * the page's boxes and holds for any input, complement coded or not. A category contains the input
+ * when w <= I in every dimension, which cannot hold for any category of a page unless min <= I.
+ *
+ * The index is kept up to date by the store: appended and removed categories are added to or taken
+ * out of their pages immediately, pages of changed categories are marked and their bounds are
+ * recomputed by the next {@link #Refresh()}, and bulk changes rebuild the index there.
+ */
+public class CategoryIndex
+{
+    private static int PAGE_SIZE = 32;
+
+    //Relative slack on the page bounds, well above the rounding error of summing the weights
+    private static double MARGIN = 1e-9;
+
+    private CategoryStore nodes;
+    private int dims;
+
+    private boolean valid = false;
+    private boolean dirty = false;
+    private int builtSize;
+    private int appendedCount;
+
+    //Node indices of each page, page p holds entries[p*PAGE_SIZE, p*PAGE_SIZE + pageSizes[p])
+    private int pageCount;
+    private int[] pageSizes = new int[0];
+    private int[] entries = new int[0];
+    private boolean[] dirtyPages = new boolean[0];
+
+    //Per-dimension bounds of the weights of each page, page p occupies [p*dims, (p+1)*dims)
+    private double[] pageMins = new double[0];
+    private double[] pageMaxs = new double[0];
+
+    //Page and position within the page of each node
+    private int[] pageOf = new int[0];
+    private int[] slotOf = new int[0];
+
+    public CategoryIndex(CategoryStore nodes)
+    {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Brings the page bounds up to date, rebuilding the index after bulk changes. Queries do not
+     * modify the index, so any number of threads may query it after a refresh as long as the store
+     * is not modified.
+     */
+    public synchronized void Refresh()
+    {
+        if (!valid)
+        {
+            Build();
+            return;
+        }
+
+        if (!dirty)
+            return;
+
+        for (int p = 0; p < pageCount; p++)
+            if (dirtyPages[p])
+                ComputeBounds(p);
+        dirty = false;
+    }
+
+    /**
+     * Collects the categories that could pass the vigilance test, a superset of those with
+     * |I ^ w|/inputSum >= vigilance
+     * @param data
+     * @param offset start of the input in data
+     * @param inputSum |I|
+     * @param vigilance
+     * @param result receives the candidate node indices, must hold Size() indices
+     * @return the number of candidates
+     */
+    public int Candidates(double[] data, int offset, double inputSum, double vigilance, int[] result)
+    {
+        assert !dirty;
+
+        int count = 0;
+        for (int p = 0; p < pageCount; p++)
+        {
+            int pageSize = pageSizes[p];
+            if (pageSize == 0)
+                continue;
+
+            double bound = FuzzyMath.sumOfMin(data, offset, pageMaxs, p * dims, dims);
+            if (bound * (1 + MARGIN) / inputSum < vigilance)
+                continue;
+
+            System.arraycopy(entries, p * PAGE_SIZE, result, count, pageSize);
+            count += pageSize;
+        }
+
+        return count;
+    }
+
+    /**
+     * Collects the categories whose boxes contain the input, those with w <= I in every dimension
+     * @param data
+     * @param offset start of the input in data
+     * @param result receives the node indices in no particular order, must hold Size() indices
+     * @return the number of categories
+     */
+    public int Containing(double[] data, int offset, int[] result)
+    {
+        assert !dirty;
+
+        double[] weights = nodes.GetWeights();
+        int count = 0;
+        for (int p = 0; p < pageCount; p++)
+        {
+            if (pageSizes[p] == 0 || !LessOrEqual(pageMins, p * dims, data, offset))
+                continue;
+
+            for (int e = p * PAGE_SIZE; e < p * PAGE_SIZE + pageSizes[p]; e++)
+                if (LessOrEqual(weights, entries[e] * dims, data, offset))
+                    result[count++] = entries[e];
+        }
+
+        return count;
+    }
+
+    private boolean LessOrEqual(double[] a, int aOffset, double[] b, int bOffset)
+    {
+        for (int d = 0; d < dims; d++)
+            if (a[aOffset + d] > b[bOffset + d])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Called by the store after a node was appended at the given index
+     * @param index
+     */
+    void Added(int index)
+    {
+        if (!valid)
+            return;
+
+        //Repack once the appended nodes outnumber the packed ones
+        if (++appendedCount > builtSize + PAGE_SIZE)
+        {
+            valid = false;
+            return;
+        }
+
+        if (pageCount == 0 || pageSizes[pageCount - 1] == PAGE_SIZE)
+            AddPage();
+
+        int p = pageCount - 1;
+        EnsureNodeCapacity(index + 1);
+        pageOf[index] = p;
+        slotOf[index] = pageSizes[p];
+        entries[p * PAGE_SIZE + pageSizes[p]++] = index;
+
+        if (!dirtyPages[p])
+            ExtendBounds(p, index);
+    }
+
+    /**
+     * Called by the store after the node at the given index was removed and the following nodes
+     * were shifted down by one
+     * @param index
+     */
+    void Removed(int index)
+    {
+        if (!valid)
+            return;
+
+        //Fill the slot with the last entry of the page, the old bounds still hold until refreshed
+        int p = pageOf[index];
+        int last = p * PAGE_SIZE + --pageSizes[p];
+        int moved = entries[last];
+        entries[p * PAGE_SIZE + slotOf[index]] = moved;
+        slotOf[moved] = slotOf[index];
+        dirtyPages[p] = true;
+        dirty = true;
+
+        //Shift the following nodes down
+        int size = nodes.Size();
+        System.arraycopy(pageOf, index + 1, pageOf, index, size - index);
+        System.arraycopy(slotOf, index + 1, slotOf, index, size - index);
+        for (int p2 = 0; p2 < pageCount; p2++)
+            for (int e = p2 * PAGE_SIZE; e < p2 * PAGE_SIZE + pageSizes[p2]; e++)
+                if (entries[e] > index)
+                    entries[e]--;
+    }
+
+    /**
+     * Called by the store after the weights of a node changed
+     * @param index
+     */
+    void Changed(int index)
+    {
+        if (!valid)
+            return;
+
+        dirtyPages[pageOf[index]] = true;
+        dirty = true;
+    }
+
+    /**
+     * Called by the store after changes to many nodes, the index is rebuilt by the next refresh
+     */
+    void Invalidate()
+    {
+        valid = false;
+    }
+
+    /**
+     * Packs the nodes into pages sort-tile-recursive style, ordered by box center along the first
+     * feature and then, within each slice, along the second
+     */
+    private void Build()
+    {
+        int size = nodes.Size();
+        dims = nodes.Dimensions();
+        pageCount = 0;
+        dirty = false;
+        builtSize = size;
+        appendedCount = 0;
+
+        //An empty store may not know its dimensions yet, build again once it has nodes
+        if (size == 0)
+            return;
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+
+        int pages = (size + PAGE_SIZE - 1) / PAGE_SIZE;
+        int slices = (int)Math.ceil(Math.sqrt(pages));
+        int sliceSize = (pages + slices - 1) / slices * PAGE_SIZE;
+
+        Arrays.sort(order, new CenterComparator(0));
+        for (int from = 0; from < size; from += sliceSize)
+            Arrays.sort(order, from, Math.min(from + sliceSize, size), new CenterComparator(1));
+
+        EnsureNodeCapacity(size);
+        for (int i = 0; i < size; i++)
+        {
+            if (i % PAGE_SIZE == 0)
+                AddPage();
+
+            int p = pageCount - 1;
+            pageOf[order[i]] = p;
+            slotOf[order[i]] = pageSizes[p];
+            entries[p * PAGE_SIZE + pageSizes[p]++] = order[i];
+        }
+
+        for (int p = 0; p < pageCount; p++)
+            ComputeBounds(p);
+
+        valid = true;
+    }
+
+    /**
+     * Orders nodes by the center of their box along one feature, w_k - w_(k+M) = u_k + v_k - 1
+     * under complement coding
+     */
+    private class CenterComparator implements Comparator<Integer>
+    {
+        private int feature;
+
+        private CenterComparator(int feature)
+        {
+            this.feature = feature;
+        }
+
+        private double Center(int node)
+        {
+            int half = dims / 2;
+            if (feature >= half)
+                return nodes.GetWeight(node, Math.min(feature, dims - 1));
+
+            return nodes.GetWeight(node, feature) - nodes.GetWeight(node, feature + half);
+        }
+
+        @Override
+        public int compare(Integer a, Integer b)
+        {
+            return Double.compare(Center(a), Center(b));
+        }
+    }
+
+    private void AddPage()
+    {
+        if (pageCount == pageSizes.length)
+        {
+            int capacity = Math.max(4, 2 * pageSizes.length);
+            pageSizes = Arrays.copyOf(pageSizes, capacity);
+            dirtyPages = Arrays.copyOf(dirtyPages, capacity);
+            entries = Arrays.copyOf(entries, capacity * PAGE_SIZE);
+            pageMins = Arrays.copyOf(pageMins, capacity * dims);
+            pageMaxs = Arrays.copyOf(pageMaxs, capacity * dims);
+        }
+
+        pageSizes[pageCount] = 0;
+        dirtyPages[pageCount] = false;
+        Arrays.fill(pageMins, pageCount * dims, (pageCount + 1) * dims, Double.POSITIVE_INFINITY);
+        Arrays.fill(pageMaxs, pageCount * dims, (pageCount + 1) * dims, Double.NEGATIVE_INFINITY);
+        pageCount++;
+    }
+
+    private void EnsureNodeCapacity(int capacity)
+    {
+        if (pageOf.length < capacity)
+        {
+            int newCapacity = Math.max(capacity, 2 * pageOf.length);
+            pageOf = Arrays.copyOf(pageOf, newCapacity);
+            slotOf = Arrays.copyOf(slotOf, newCapacity);
+        }
+    }
+
+    private void ComputeBounds(int p)
+    {
+        Arrays.fill(pageMins, p * dims, (p + 1) * dims, Double.POSITIVE_INFINITY);
+        Arrays.fill(pageMaxs, p * dims, (p + 1) * dims, Double.NEGATIVE_INFINITY);
+        for (int e = p * PAGE_SIZE; e < p * PAGE_SIZE + pageSizes[p]; e++)
+            ExtendBounds(p, entries[e]);
+        dirtyPages[p] = false;
+    }
+
+    private void ExtendBounds(int p, int node)
+    {
+        double[] weights = nodes.GetWeights();
+        int offset = node * dims;
+        for (int d = 0; d < dims; d++)
+        {
+            pageMins[p * dims + d] = Math.min(pageMins[p * dims + d], weights[offset + d]);
+            pageMaxs[p * dims + d] = Math.max(pageMaxs[p * dims + d], weights[offset + d]);
+        }
+    }
+}
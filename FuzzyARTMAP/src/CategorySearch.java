@@ -0,0 +1,218 @@
+/**
+ * Yields the categories of a Fuzzy ARTMAP in descending order of choice value for a single input,
+ * followed lazily by the uncommitted node and the categories that rank below it. Ties are broken
+ * by node index, with the uncommitted node after all committed nodes of equal activation, which
+ * is the order a stable sort of the activation list produces.
+ *
+ * Only the candidates that rank above the uncommitted node are heapified when an input is
+ * presented; the rest are only ordered if the search continues past the uncommitted node.
+ */
+public class CategorySearch
+{
+    private int size;
+    private double[] matches = new double[0];
+    private double[] activations = new double[0];
+    private double uncommittedActivation;
+
+    private int[] heap = new int[0];
+    private int[] candidates = new int[0];
+    private int heapSize;
+    private int belowCount;
+    private int phase;
+
+    /**
+     * Computes the choice values for an input and starts a new search
+     * @param nodes
+     * @param input
+     * @param choiceParam
+     */
+    public void Begin(CategoryStore nodes, double[] input, double choiceParam)
+    {
+        Begin(nodes, input, 0, input.length, choiceParam);
+    }
+
+    /**
+     * Computes the choice values for an input stored at an offset of a larger array, such as a
+     * row of a {@link Dataset}, and starts a new search
+     * @param nodes
+     * @param data
+     * @param offset start of the input in data
+     * @param dims length of the input
+     * @param choiceParam
+     */
+    public void Begin(CategoryStore nodes, double[] data, int offset, int dims, double choiceParam)
+    {
+        size = nodes.Size();
+        EnsureCapacity(size);
+
+        //Compute |I ^ w| for all committed nodes in one pass
+        FuzzyMath.sumOfMin(data, offset, nodes.GetWeights(), dims, 0, size, matches);
+
+        //Activation of the uncommitted node, whose weights are all ones
+        uncommittedActivation = FuzzyMath.sum(data, offset, dims)/(choiceParam + dims);
+
+        //Partition nodes that rank above the uncommitted node to the front of the heap
+        double[] weightSums = nodes.GetWeightSums();
+        heapSize = 0;
+        belowCount = 0;
+        for (int i = 0; i < size; i++)
+        {
+            activations[i] = matches[i]/(choiceParam + weightSums[i]);
+            if (Double.compare(activations[i], uncommittedActivation) >= 0)
+                heap[heapSize++] = i;
+            else
+                heap[size - ++belowCount] = i;
+        }
+
+        Heapify();
+        phase = 0;
+    }
+
+    /**
+     * Starts a new search over only the categories that the index finds could pass the vigilance
+     * test. Categories that certainly fail it are neither scored nor returned; the others are
+     * returned in the same order, with the same match and activation, as by
+     * {@link #Begin(CategoryStore, double[], int, int, double)}. The index must be refreshed.
+     * @param nodes
+     * @param data
+     * @param offset start of the input in data
+     * @param dims length of the input
+     * @param choiceParam
+     * @param index
+     * @param vigilance
+     */
+    public void Begin(CategoryStore nodes, double[] data, int offset, int dims, double choiceParam, CategoryIndex index, double vigilance)
+    {
+        size = nodes.Size();
+        EnsureCapacity(size);
+
+        //Activation of the uncommitted node, whose weights are all ones
+        double inputSum = FuzzyMath.sum(data, offset, dims);
+        uncommittedActivation = inputSum/(choiceParam + dims);
+
+        int count = index.Candidates(data, offset, inputSum, vigilance, candidates);
+
+        //Score the candidates and partition those that rank above the uncommitted node to the front
+        double[] weights = nodes.GetWeights();
+        double[] weightSums = nodes.GetWeightSums();
+        heapSize = 0;
+        belowCount = 0;
+        for (int c = 0; c < count; c++)
+        {
+            int i = candidates[c];
+            matches[i] = FuzzyMath.sumOfMin(data, offset, weights, i * dims, dims);
+            activations[i] = matches[i]/(choiceParam + weightSums[i]);
+            if (Double.compare(activations[i], uncommittedActivation) >= 0)
+                heap[heapSize++] = i;
+            else
+                heap[size - ++belowCount] = i;
+        }
+
+        Heapify();
+        phase = 0;
+    }
+
+    private void EnsureCapacity(int size)
+    {
+        if (matches.length < size)
+        {
+            int capacity = Math.max(size, 2 * matches.length);
+            matches = new double[capacity];
+            activations = new double[capacity];
+            heap = new int[capacity];
+            candidates = new int[capacity];
+        }
+    }
+
+    /**
+     * Returns the next candidate in descending order of activation, {@link #Uncommitted()} for the
+     * uncommitted node, or -1 once all candidates have been returned
+     * @return
+     */
+    public int Next()
+    {
+        if (heapSize > 0)
+            return Pop();
+
+        switch (phase)
+        {
+            case 0:
+                phase = 1;
+                return size;
+            case 1:
+                phase = 2;
+                System.arraycopy(heap, size - belowCount, heap, 0, belowCount);
+                heapSize = belowCount;
+                Heapify();
+                if (heapSize > 0)
+                    return Pop();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the candidate index used for the uncommitted node
+     * @return
+     */
+    public int Uncommitted()
+    {
+        return size;
+    }
+
+    /**
+     * Returns |I ^ w| of a committed node for the current input
+     * @param candidate
+     * @return
+     */
+    public double GetMatch(int candidate)
+    {
+        return matches[candidate];
+    }
+
+    public double GetActivation(int candidate)
+    {
+        if (candidate == size)
+            return uncommittedActivation;
+
+        return activations[candidate];
+    }
+
+    private boolean Before(int a, int b)
+    {
+        int compare = Double.compare(activations[a], activations[b]);
+        return compare > 0 || (compare == 0 && a < b);
+    }
+
+    private void Heapify()
+    {
+        for (int i = heapSize/2 - 1; i >= 0; i--)
+            SiftDown(i);
+    }
+
+    private int Pop()
+    {
+        int top = heap[0];
+        heap[0] = heap[--heapSize];
+        SiftDown(0);
+        return top;
+    }
+
+    private void SiftDown(int i)
+    {
+        int node = heap[i];
+        while (true)
+        {
+            int child = 2*i + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && Before(heap[child + 1], heap[child]))
+                child++;
+            if (!Before(heap[child], node))
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = node;
+    }
+}
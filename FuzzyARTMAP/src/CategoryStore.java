@@ -0,0 +1,626 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contiguous storage for the categories of a Fuzzy ARTMAP. The weights of all nodes are kept
+ * row-major in a single primitive array (nodes x dims), with labels and validation statistics
+ * held in parallel arrays indexed by node.
+ *
+ * Copies are copy-on-write: a copy shares the arrays of the store it was made from until either
+ * store modifies them, and only the store that writes makes its own copy. Shared arrays are never
+ * written in place, so mutating or pruning a copy never changes the original.
+ */
+public class CategoryStore
+{
+    private static int INITIAL_CAPACITY = 16;
+
+    private int dims;
+    private int size;
+
+    private double[] weights;
+    private double[] weightSums;
+    private int[] labels;
+
+    private int[] accuracyCounts;
+    private int[] frequencyCounts;
+    private double[] accuracies;
+    private double[] frequencies;
+
+    //Content hash of each node and a chained hash table of node indices, built on first lookup.
+    //hashHeads holds the first node of each bucket and hashNext the next node in the same bucket,
+    //-1 ending a chain, so a lookup only compares the nodes whose hash shares its bucket.
+    private long[] hashes;
+    private int[] hashHeads;
+    private int[] hashNext;
+
+    //Spatial index notified of changes to the nodes, or null
+    private CategoryIndex index;
+
+    //Number of stores sharing the node arrays (weights, sums and labels) and the statistics arrays.
+    //They are shared separately since validation writes the statistics of every copy while most
+    //copies never change their weights.
+    private AtomicInteger nodeOwners;
+    private AtomicInteger statisticOwners;
+
+    public CategoryStore()
+    {
+        this(0);
+    }
+
+    public CategoryStore(int dims)
+    {
+        this.dims = dims;
+        Allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Copy of another store, including validation statistics. The copy shares the arrays of the
+     * store until either of them is modified, so copying takes constant time
+     * @param store
+     */
+    public CategoryStore(CategoryStore store)
+    {
+        dims = store.dims;
+        size = store.size;
+
+        weights = store.weights;
+        weightSums = store.weightSums;
+        labels = store.labels;
+        nodeOwners = store.nodeOwners;
+        nodeOwners.incrementAndGet();
+
+        accuracyCounts = store.accuracyCounts;
+        frequencyCounts = store.frequencyCounts;
+        accuracies = store.accuracies;
+        frequencies = store.frequencies;
+        statisticOwners = store.statisticOwners;
+        statisticOwners.incrementAndGet();
+    }
+
+    private void Allocate(int capacity)
+    {
+        ReleaseNodes();
+        weights = new double[capacity * dims];
+        weightSums = new double[capacity];
+        labels = new int[capacity];
+
+        ReleaseStatistics();
+        AllocateStatistics(capacity);
+    }
+
+    private void AllocateStatistics(int capacity)
+    {
+        accuracyCounts = new int[capacity];
+        frequencyCounts = new int[capacity];
+        accuracies = new double[capacity];
+        frequencies = new double[capacity];
+    }
+
+    //Stops sharing the node arrays, the caller replaces them
+    private void ReleaseNodes()
+    {
+        if (nodeOwners != null)
+            nodeOwners.decrementAndGet();
+        nodeOwners = new AtomicInteger(1);
+    }
+
+    //Stops sharing the statistics arrays, the caller replaces them
+    private void ReleaseStatistics()
+    {
+        if (statisticOwners != null)
+            statisticOwners.decrementAndGet();
+        statisticOwners = new AtomicInteger(1);
+    }
+
+    private static int GrowCapacity(int capacity, int length)
+    {
+        return capacity <= length ? length : Math.max(capacity, length * 2);
+    }
+
+    /**
+     * Makes the node arrays private to this store, copying them if they are shared, with room for
+     * at least the given number of nodes
+     * @param capacity
+     */
+    private void OwnNodes(int capacity)
+    {
+        boolean shared = nodeOwners.get() > 1;
+        if (!shared && capacity <= labels.length)
+            return;
+
+        int newCapacity = GrowCapacity(capacity, labels.length);
+        weights = Arrays.copyOf(weights, newCapacity * dims);
+        weightSums = Arrays.copyOf(weightSums, newCapacity);
+        labels = Arrays.copyOf(labels, newCapacity);
+        if (shared)
+            ReleaseNodes();
+
+        //Content hashes are never shared, they only grow with the node arrays
+        if (hashes != null && hashes.length < newCapacity)
+        {
+            hashes = Arrays.copyOf(hashes, newCapacity);
+            hashNext = new int[newCapacity];
+            hashHeads = new int[BucketCount(newCapacity)];
+            LinkHashes();
+        }
+    }
+
+    /**
+     * Makes the statistics arrays private to this store, copying them if they are shared, with
+     * room for at least the given number of nodes
+     * @param capacity
+     */
+    private void OwnStatistics(int capacity)
+    {
+        boolean shared = statisticOwners.get() > 1;
+        if (!shared && capacity <= accuracyCounts.length)
+            return;
+
+        int newCapacity = GrowCapacity(capacity, accuracyCounts.length);
+        accuracyCounts = Arrays.copyOf(accuracyCounts, newCapacity);
+        frequencyCounts = Arrays.copyOf(frequencyCounts, newCapacity);
+        accuracies = Arrays.copyOf(accuracies, newCapacity);
+        frequencies = Arrays.copyOf(frequencies, newCapacity);
+        if (shared)
+            ReleaseStatistics();
+    }
+
+    private void EnsureCapacity(int capacity)
+    {
+        OwnNodes(capacity);
+        OwnStatistics(capacity);
+    }
+
+    /**
+     * Appends a new node with the given weights and label and cleared statistics
+     * @param pattern
+     * @param label
+     * @return index of the new node
+     */
+    public int Add(double[] pattern, int label)
+    {
+        return Add(pattern, 0, pattern.length, label);
+    }
+
+    /**
+     * Appends a new node with weights copied from a row of a larger array, such as a
+     * {@link Dataset}, and cleared statistics
+     * @param data
+     * @param offset start of the weights in data
+     * @param length number of weights
+     * @param label
+     * @return index of the new node
+     */
+    public int Add(double[] data, int offset, int length, int label)
+    {
+        if (size == 0 && dims == 0)
+        {
+            dims = length;
+            Allocate(labels.length);
+        }
+        assert length == dims;
+
+        EnsureCapacity(size + 1);
+        System.arraycopy(data, offset, weights, size * dims, dims);
+        weightSums[size] = FuzzyMath.sum(data, offset, dims);
+        labels[size] = label;
+        Reset(size);
+        AddHash(size);
+        if (index != null)
+            index.Added(size);
+
+        return size++;
+    }
+
+    /**
+     * Appends a copy of a node from another store, including its statistics
+     * @param store
+     * @param index
+     * @return index of the new node
+     */
+    public int Add(CategoryStore store, int index)
+    {
+        if (size == 0 && dims == 0)
+        {
+            dims = store.dims;
+            Allocate(labels.length);
+        }
+        assert store.dims == dims;
+
+        EnsureCapacity(size + 1);
+        System.arraycopy(store.weights, index * store.dims, weights, size * dims, dims);
+        weightSums[size] = store.weightSums[index];
+        labels[size] = store.labels[index];
+        accuracyCounts[size] = store.accuracyCounts[index];
+        frequencyCounts[size] = store.frequencyCounts[index];
+        accuracies[size] = store.accuracies[index];
+        frequencies[size] = store.frequencies[index];
+        AddHash(size);
+        if (this.index != null)
+            this.index.Added(size);
+
+        return size++;
+    }
+
+    /**
+     * Removes a node, shifting the following nodes down by one
+     * @param index
+     */
+    public void Remove(int index)
+    {
+        EnsureCapacity(size);
+        RemoveHash(index);
+
+        int tail = size - index - 1;
+        System.arraycopy(weights, (index + 1) * dims, weights, index * dims, tail * dims);
+        System.arraycopy(weightSums, index + 1, weightSums, index, tail);
+        System.arraycopy(labels, index + 1, labels, index, tail);
+        System.arraycopy(accuracyCounts, index + 1, accuracyCounts, index, tail);
+        System.arraycopy(frequencyCounts, index + 1, frequencyCounts, index, tail);
+        System.arraycopy(accuracies, index + 1, accuracies, index, tail);
+        System.arraycopy(frequencies, index + 1, frequencies, index, tail);
+        if (hashes != null)
+        {
+            //Renumber the nodes that moved down
+            System.arraycopy(hashes, index + 1, hashes, index, tail);
+            System.arraycopy(hashNext, index + 1, hashNext, index, tail);
+            for (int b = 0; b < hashHeads.length; b++)
+                if (hashHeads[b] > index)
+                    hashHeads[b]--;
+            for (int i = 0; i < size - 1; i++)
+                if (hashNext[i] > index)
+                    hashNext[i]--;
+        }
+        size--;
+        if (this.index != null)
+            this.index.Removed(index);
+    }
+
+    /**
+     * Removes all marked nodes in a single pass, preserving the order of the remaining nodes
+     * @param deleted
+     */
+    public void Remove(boolean[] deleted)
+    {
+        EnsureCapacity(size);
+        int newSize = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (deleted[i])
+                continue;
+
+            if (newSize != i)
+            {
+                System.arraycopy(weights, i * dims, weights, newSize * dims, dims);
+                weightSums[newSize] = weightSums[i];
+                labels[newSize] = labels[i];
+                accuracyCounts[newSize] = accuracyCounts[i];
+                frequencyCounts[newSize] = frequencyCounts[i];
+                accuracies[newSize] = accuracies[i];
+                frequencies[newSize] = frequencies[i];
+                if (hashes != null)
+                    hashes[newSize] = hashes[i];
+            }
+            newSize++;
+        }
+        size = newSize;
+        if (hashes != null)
+            LinkHashes();
+        if (index != null)
+            index.Invalidate();
+    }
+
+    /**
+     * Returns true if a node has the same weights and label. Nodes are looked up in a hash table of
+     * their contents, so only the few nodes in the same bucket are compared, in expected constant
+     * time
+     * @param pattern
+     * @param label
+     * @return
+     */
+    public boolean Contains(double[] pattern, int label)
+    {
+        if (hashes == null)
+            BuildHashes();
+
+        long hash = Hash(pattern, 0, label);
+        for (int i = hashHeads[Bucket(hash)]; i >= 0; i = hashNext[i])
+            if (hashes[i] == hash && labels[i] == label && RowEquals(i, pattern))
+                return true;
+
+        return false;
+    }
+
+    private void BuildHashes()
+    {
+        hashes = new long[labels.length];
+        hashNext = new int[labels.length];
+        hashHeads = new int[BucketCount(labels.length)];
+        for (int i = 0; i < size; i++)
+            hashes[i] = Hash(weights, i * dims, labels[i]);
+        LinkHashes();
+    }
+
+    //Rebuilds the bucket chains from the hashes of the nodes
+    private void LinkHashes()
+    {
+        Arrays.fill(hashHeads, -1);
+        for (int i = 0; i < size; i++)
+            Link(i);
+    }
+
+    private void Link(int index)
+    {
+        int b = Bucket(hashes[index]);
+        hashNext[index] = hashHeads[b];
+        hashHeads[b] = index;
+    }
+
+    private void AddHash(int index)
+    {
+        if (hashes == null)
+            return;
+
+        hashes[index] = Hash(weights, index * dims, labels[index]);
+        Link(index);
+    }
+
+    private void RemoveHash(int index)
+    {
+        if (hashes == null)
+            return;
+
+        //Unlink the node from its bucket chain
+        int b = Bucket(hashes[index]);
+        if (hashHeads[b] == index)
+        {
+            hashHeads[b] = hashNext[index];
+            return;
+        }
+        for (int i = hashHeads[b]; i >= 0; i = hashNext[i])
+        {
+            if (hashNext[i] == index)
+            {
+                hashNext[i] = hashNext[index];
+                return;
+            }
+        }
+    }
+
+    //Power of two number of buckets, at least two per node of capacity
+    private static int BucketCount(int capacity)
+    {
+        return Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) << 1;
+    }
+
+    private int Bucket(long hash)
+    {
+        return (int)(hash ^ (hash >>> 32)) & (hashHeads.length - 1);
+    }
+
+    /**
+     * Hash of a row and label, consistent with comparing weights by {@link Double#compare}
+     */
+    private long Hash(double[] a, int offset, int label)
+    {
+        long hash = label;
+        for (int k = 0; k < dims; k++)
+            hash = 31*hash + Double.doubleToLongBits(a[offset + k]);
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Returns true if a node has exactly the given weights
+     * @param index
+     * @param pattern
+     * @return
+     */
+    public boolean RowEquals(int index, double[] pattern)
+    {
+        int offset = index * dims;
+        for (int k = 0; k < dims; k++)
+            if (Double.compare(weights[offset + k], pattern[k]) != 0)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Attaches a spatial index to be kept up to date as nodes change, or detaches it with null
+     * @param index
+     */
+    public void SetIndex(CategoryIndex index)
+    {
+        this.index = index;
+        if (index != null)
+            index.Invalidate();
+    }
+
+    public CategoryIndex GetIndex()
+    {
+        return index;
+    }
+
+    public int Size()
+    {
+        return size;
+    }
+
+    public int Dimensions()
+    {
+        return dims;
+    }
+
+    /**
+     * Returns the backing weight array, node i occupies [i*dims, (i+1)*dims). The array may be
+     * shared with copies of the store: call {@link #BeginUpdate(int)} before writing to it, and get
+     * the array again afterwards
+     * @return
+     */
+    public double[] GetWeights()
+    {
+        return weights;
+    }
+
+    public int Offset(int index)
+    {
+        return index * dims;
+    }
+
+    public double GetWeight(int index, int k)
+    {
+        return weights[index * dims + k];
+    }
+
+    public void SetWeight(int index, int k, double value)
+    {
+        OwnNodes(size);
+        RemoveHash(index);
+        weights[index * dims + k] = value;
+        Update(index);
+    }
+
+    /**
+     * Returns |w| for every node, kept up to date as weights change
+     * @return
+     */
+    public double[] GetWeightSums()
+    {
+        return weightSums;
+    }
+
+    public double GetWeightSum(int index)
+    {
+        return weightSums[index];
+    }
+
+    /**
+     * Marks a node as about to have its weights written through {@link #GetWeights()}, copying the
+     * weights first if they are shared
+     * @param index
+     */
+    public void BeginUpdate(int index)
+    {
+        OwnNodes(size);
+        RemoveHash(index);
+    }
+
+    /**
+     * Recomputes the cached |w| and content hash of a node after its weights were written through
+     * {@link #GetWeights()}
+     * @param index
+     */
+    public void Update(int index)
+    {
+        assert nodeOwners.get() == 1;
+        weightSums[index] = FuzzyMath.sum(weights, index * dims, dims);
+        AddHash(index);
+        if (this.index != null)
+            this.index.Changed(index);
+    }
+
+    /**
+     * Returns a copy of the weights of a node
+     * @param index
+     * @return
+     */
+    public double[] GetPattern(int index)
+    {
+        return Arrays.copyOfRange(weights, index * dims, (index + 1) * dims);
+    }
+
+    public int GetLabel(int index)
+    {
+        return labels[index];
+    }
+
+    public int GetAccuracyCount(int index)
+    {
+        return accuracyCounts[index];
+    }
+
+    public void IncrementAccuracyCount(int index)
+    {
+        OwnStatistics(size);
+        accuracyCounts[index]++;
+    }
+
+    public int GetFrequencyCount(int index)
+    {
+        return frequencyCounts[index];
+    }
+
+    public void IncrementFrequencyCount(int index)
+    {
+        OwnStatistics(size);
+        frequencyCounts[index]++;
+    }
+
+    /**
+     * Sets the accuracy and frequency counts of a node, such as ones recorded by an earlier
+     * validation of identical weights
+     * @param index
+     * @param accuracyCount
+     * @param frequencyCount
+     */
+    public void SetCounts(int index, int accuracyCount, int frequencyCount)
+    {
+        OwnStatistics(size);
+        accuracyCounts[index] = accuracyCount;
+        frequencyCounts[index] = frequencyCount;
+    }
+
+    public double GetAccuracy(int index)
+    {
+        return accuracies[index];
+    }
+
+    public void SetAccuracy(int index, double accuracy)
+    {
+        OwnStatistics(size);
+        accuracies[index] = accuracy;
+    }
+
+    public double GetFrequency(int index)
+    {
+        return frequencies[index];
+    }
+
+    public void SetFrequency(int index, double frequency)
+    {
+        OwnStatistics(size);
+        frequencies[index] = frequency;
+    }
+
+    public double GetConfidenceFactor(int index)
+    {
+        return 0.5*accuracies[index] + 0.5*frequencies[index];
+    }
+
+    /**
+     * Clears the validation statistics of a node
+     * @param index
+     */
+    public void Reset(int index)
+    {
+        OwnStatistics(size);
+        accuracyCounts[index] = 0;
+        frequencyCounts[index] = 0;
+        accuracies[index] = 0;
+        frequencies[index] = 0;
+    }
+
+    public void Reset()
+    {
+        //Shared statistics are replaced rather than copied and cleared
+        if (statisticOwners.get() > 1)
+        {
+            ReleaseStatistics();
+            AllocateStatistics(labels.length);
+            return;
+        }
+
+        for (int i = 0; i < size; i++)
+            Reset(i);
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The saved state of a single run of {@link MOGFAM}, from which an interrupted run is resumed and
+ * continues exactly as it would have without the interruption. A run in progress is saved as the
+ * state of each of its islands (generation, generator, population, archive, fitness cache and
+ * counters), a finished run as its final archive. Both record the output the run printed so far.
+ *
+ * Checkpoints are written by a background thread, first to a temporary file that is then renamed
+ * over the checkpoint, so that an interruption leaves either the previous or the new checkpoint.
+ * The file is big endian, as written by DataOutputStream:
+ *   magic "MGCK", version, run, run seed, complete flag, output (length prefixed bytes),
+ *   then for a complete run the archive (count, chromosomes),
+ *   otherwise the island count and the state of each island (length prefixed bytes).
+ * A chromosome is written as its network (choice, baseline vigilance, maximum epochs, convergence
+ * tolerance, learning rate, match tracking epsilon, indexed flag, dimensions, size, then the
+ * weights, label, counts, accuracy and frequency of each node) followed by its error rate, complexity, strength value, fitness and
+ * truncated flag.
+ */
+public class Checkpoint
+{
+    private static int MAGIC = 0x4D47434B;
+    private static int VERSION = 2;
+
+    //Writes checkpoint files in the order they were saved, off the generation loop
+    private static ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Checkpoint writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private int run;
+    private long seed;
+    private byte[] output;
+    private ArrayList<Chromosome> archive;
+    private byte[][] islandStates;
+
+    /**
+     * Checkpoint of a run in progress
+     * @param run
+     * @param seed
+     * @param output output printed by the run so far
+     * @param islandStates state of each island
+     */
+    public Checkpoint(int run, long seed, byte[] output, byte[][] islandStates)
+    {
+        this.run = run;
+        this.seed = seed;
+        this.output = output;
+        this.islandStates = islandStates;
+    }
+
+    /**
+     * Checkpoint of a finished run
+     * @param run
+     * @param seed
+     * @param output everything printed by the run
+     * @param archive final archive, evaluated on the testing set
+     */
+    public Checkpoint(int run, long seed, byte[] output, ArrayList<Chromosome> archive)
+    {
+        this.run = run;
+        this.seed = seed;
+        this.output = output;
+        this.archive = archive;
+    }
+
+    public int GetRun()
+    {
+        return run;
+    }
+
+    public long GetSeed()
+    {
+        return seed;
+    }
+
+    public byte[] GetOutput()
+    {
+        return output;
+    }
+
+    public boolean IsComplete()
+    {
+        return archive != null;
+    }
+
+    public ArrayList<Chromosome> GetArchive()
+    {
+        return archive;
+    }
+
+    public byte[][] GetIslandStates()
+    {
+        return islandStates;
+    }
+
+    /**
+     * Serializes the checkpoint and queues it to be written to the given file
+     * @param path
+     */
+    public void Save(final Path path)
+    {
+        final byte[] bytes;
+        try
+        {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(buffer);
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(run);
+            stream.writeLong(seed);
+            stream.writeBoolean(IsComplete());
+            WriteBytes(stream, output);
+            if (IsComplete())
+            {
+                stream.writeInt(archive.size());
+                for (Chromosome chromo : archive)
+                    WriteChromosome(stream, chromo);
+            }
+            else
+            {
+                stream.writeInt(islandStates.length);
+                for (byte[] state : islandStates)
+                    WriteBytes(stream, state);
+            }
+            stream.flush();
+            bytes = buffer.toByteArray();
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        WRITER.submit(new Runnable() {
+            @Override
+            public void run() {
+                Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+                try
+                {
+                    Files.createDirectories(path.toAbsolutePath().getParent());
+                    Files.write(temp, bytes);
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e)
+                {
+                    System.out.println("IOException occurred while writing " + path + ", continuing without checkpoint.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads a checkpoint
+     * @param path
+     * @return the checkpoint, or null if there is none
+     */
+    public static Checkpoint Load(Path path)
+    {
+        try
+        {
+            DataInputStream stream = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)));
+            if (stream.readInt() != MAGIC || stream.readInt() != VERSION)
+                throw new IOException("Unsupported checkpoint format");
+
+            int run = stream.readInt();
+            long seed = stream.readLong();
+            boolean complete = stream.readBoolean();
+            byte[] output = ReadBytes(stream);
+            if (complete)
+            {
+                int count = stream.readInt();
+                ArrayList<Chromosome> archive = new ArrayList<Chromosome>(count);
+                for (int i = 0; i < count; i++)
+                    archive.add(ReadChromosome(stream));
+                return new Checkpoint(run, seed, output, archive);
+            }
+
+            byte[][] islandStates = new byte[stream.readInt()][];
+            for (int i = 0; i < islandStates.length; i++)
+                islandStates[i] = ReadBytes(stream);
+            return new Checkpoint(run, seed, output, islandStates);
+        } catch (NoSuchFileException e)
+        {
+            return null;
+        } catch (IOException e)
+        {
+            System.out.println("IOException occurred while reading " + path + ": " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Waits until every checkpoint saved so far has been written
+     */
+    public static void Flush()
+    {
+        try
+        {
+            WRITER.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public static void WriteBytes(DataOutputStream stream, byte[] bytes) throws IOException
+    {
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    public static byte[] ReadBytes(DataInputStream stream) throws IOException
+    {
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the complete state of a generator, so that it continues with the same sequence
+     * @param stream
+     * @param random
+     * @throws IOException
+     */
+    public static void WriteRandom(DataOutputStream stream, Random random) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream objectStream = new ObjectOutputStream(buffer);
+        objectStream.writeObject(random);
+        objectStream.close();
+        WriteBytes(stream, buffer.toByteArray());
+    }
+
+    public static Random ReadRandom(DataInputStream stream) throws IOException
+    {
+        ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(ReadBytes(stream)));
+        try
+        {
+            return (Random)objectStream.readObject();
+        } catch (ClassNotFoundException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    public static void WriteChromosome(DataOutputStream stream, Chromosome chromo) throws IOException
+    {
+        FuzzyARTMAP fartmap = chromo.GetFuzzyARTMAP();
+        stream.writeDouble(fartmap.GetChoiceParam());
+        stream.writeDouble(fartmap.GetBaselineVigilanceParam());
+        stream.writeInt(fartmap.GetMaxEpochs());
+        stream.writeDouble(fartmap.GetConvergenceTolerance());
+        stream.writeDouble(fartmap.GetLearningRate());
+        stream.writeDouble(fartmap.GetMatchTrackingEpsilon());
+        stream.writeBoolean(fartmap.IsIndexed());
+
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        int dims = nodes.Dimensions();
+        stream.writeInt(dims);
+        stream.writeInt(nodes.Size());
+        double[] weights = nodes.GetWeights();
+        for (int i = 0; i < nodes.Size(); i++)
+        {
+            for (int k = 0; k < dims; k++)
+                stream.writeDouble(weights[i * dims + k]);
+            stream.writeInt(nodes.GetLabel(i));
+            stream.writeInt(nodes.GetAccuracyCount(i));
+            stream.writeInt(nodes.GetFrequencyCount(i));
+            stream.writeDouble(nodes.GetAccuracy(i));
+            stream.writeDouble(nodes.GetFrequency(i));
+        }
+
+        stream.writeDouble(chromo.GetErrorRate());
+        stream.writeInt(chromo.GetComplexity());
+        stream.writeInt(chromo.GetStrengthValue());
+        stream.writeDouble(chromo.GetFitness());
+        stream.writeBoolean(chromo.IsTruncated());
+    }
+
+    public static Chromosome ReadChromosome(DataInputStream stream) throws IOException
+    {
+        double choiceParam = stream.readDouble();
+        double baselineVigilanceParam = stream.readDouble();
+        FuzzyARTMAP fartmap = new FuzzyARTMAP(choiceParam, baselineVigilanceParam);
+        fartmap.SetMaxEpochs(stream.readInt());
+        fartmap.SetConvergenceTolerance(stream.readDouble());
+        fartmap.SetLearningRate(stream.readDouble());
+        fartmap.SetMatchTrackingEpsilon(stream.readDouble());
+        boolean indexed = stream.readBoolean();
+
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        double[] pattern = new double[stream.readInt()];
+        int size = stream.readInt();
+        for (int i = 0; i < size; i++)
+        {
+            for (int k = 0; k < pattern.length; k++)
+                pattern[k] = stream.readDouble();
+            nodes.Add(pattern, stream.readInt());
+            nodes.SetCounts(i, stream.readInt(), stream.readInt());
+            nodes.SetAccuracy(i, stream.readDouble());
+            nodes.SetFrequency(i, stream.readDouble());
+        }
+        fartmap.SetIndexed(indexed);
+
+        double errorRate = stream.readDouble();
+        int complexity = stream.readInt();
+        int strengthValue = stream.readInt();
+        double fitness = stream.readDouble();
+        boolean truncated = stream.readBoolean();
+        return new Chromosome(fartmap, errorRate, complexity, strengthValue, fitness, truncated);
+    }
+}
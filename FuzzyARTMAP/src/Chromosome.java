@@ -1,4 +1,3 @@
-import java.awt.*;
 import java.util.*;
 
 /**
@@ -12,6 +11,7 @@ public class Chromosome implements Comparable<Chromosome>
     private int complexity;
     private int strengthValue;
     private double fitness;
+    private boolean truncated;
 
     public enum CrossoverType
     {
@@ -19,21 +19,41 @@ public class Chromosome implements Comparable<Chromosome>
     }
 
     /**
-     * Constructor
+     * Constructor, trains a Fuzzy ARTMAP on the input presented in a random order. The random
+     * generator determines both the baseline vigilance and the presentation order.
      */
-    public Chromosome(Map<Double[], Integer> input, Random random, double choiceParam)
+    public Chromosome(Dataset input, Random random, double choiceParam)
+    {
+        this(input, random, choiceParam, false);
+    }
+
+    /**
+     * Constructor, trains a Fuzzy ARTMAP on the input presented in a random order, optionally with
+     * a spatial index over its categories (see {@link FuzzyARTMAP#SetIndexed(boolean)})
+     */
+    public Chromosome(Dataset input, Random random, double choiceParam, boolean indexed)
+    {
+        this(input, random, choiceParam, indexed, 0, 1.0, 0.0);
+    }
+
+    /**
+     * Constructor, trains a Fuzzy ARTMAP on the input presented in a random order with the given
+     * training options (see {@link FuzzyARTMAP#SetMaxEpochs(int)},
+     * {@link FuzzyARTMAP#SetLearningRate(double)} and {@link FuzzyARTMAP#SetMatchTrackingEpsilon(double)})
+     */
+    public Chromosome(Dataset input, Random random, double choiceParam, boolean indexed,
+                      int maxEpochs, double learningRate, double matchTrackingEpsilon)
     {
         //Random baseline vigilance between 0.1 and 0.95
         double baselineVigilance = GetRandomBaselineVigilanceParameter(random);
 
         //Randomly ordered input
-        Map<Double[], Integer> shuffledMap = new LinkedHashMap<Double[], Integer>();
-        ArrayList<Double[]> shuffledList = new ArrayList<Double[]>(input.keySet());
-        Collections.shuffle(shuffledList);
-        for (Double[] key : shuffledList)
-            shuffledMap.put(key, input.get(key));
-
-        fartmap = new FuzzyARTMAP(input, choiceParam, baselineVigilance);
+        fartmap = new FuzzyARTMAP(choiceParam, baselineVigilance);
+        fartmap.SetIndexed(indexed);
+        fartmap.SetMaxEpochs(maxEpochs);
+        fartmap.SetLearningRate(learningRate);
+        fartmap.SetMatchTrackingEpsilon(matchTrackingEpsilon);
+        fartmap.Train(input.Shuffle(random));
     }
 
     public Chromosome(Chromosome chromo)
@@ -43,6 +63,21 @@ public class Chromosome implements Comparable<Chromosome>
         complexity = chromo.GetComplexity();
         strengthValue = chromo.GetStrengthValue();
         fitness = chromo.GetFitness();
+        truncated = chromo.IsTruncated();
+    }
+
+    /**
+     * Restores a chromosome with the given network and objective and fitness values, such as one
+     * read from a checkpoint
+     */
+    public Chromosome(FuzzyARTMAP fartmap, double errorRate, int complexity, int strengthValue, double fitness, boolean truncated)
+    {
+        this.fartmap = fartmap;
+        this.errorRate = errorRate;
+        this.complexity = complexity;
+        this.strengthValue = strengthValue;
+        this.fitness = fitness;
+        this.truncated = truncated;
     }
 
     public Chromosome(ArrayList<Node> nodes, Random random, double choiceParam)
@@ -62,10 +97,78 @@ public class Chromosome implements Comparable<Chromosome>
      * Compute objective values for individual (error rate and complexity)
      * @param validationSet
      */
-    public void ComputeObjectiveValues(Map<Double[], Integer> validationSet)
+    public void ComputeObjectiveValues(Dataset validationSet)
     {
-        errorRate = fartmap.Validate(validationSet);
+        ComputeObjectiveValues(validationSet, null);
+    }
+
+    /**
+     * Compute objective values for individual (error rate and complexity), reusing the results of
+     * an earlier validation of an identical network if the cache has them
+     * @param validationSet
+     * @param cache cache of results for validationSet, or null
+     */
+    public void ComputeObjectiveValues(Dataset validationSet, FitnessCache cache)
+    {
+        ComputeObjectiveValues(validationSet, cache, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Compute objective values for individual, stopping validation early once the error rate is
+     * certain to be above errorBound (see {@link FuzzyARTMAP#Validate(Dataset, double)}). The
+     * error rate of a truncated individual is a lower bound and it is not cached.
+     * @param validationSet
+     * @param cache cache of results for validationSet, or null
+     * @param errorBound
+     */
+    public void ComputeObjectiveValues(Dataset validationSet, FitnessCache cache, double errorBound)
+    {
+        if (cache != null && LookupObjectiveValues(cache))
+            return;
+
+        errorRate = fartmap.Validate(validationSet, errorBound);
+        truncated = fartmap.IsValidationTruncated();
         complexity = fartmap.Size();
+
+        if (cache != null)
+            CacheObjectiveValues(cache);
+    }
+
+    /**
+     * Restores the objective values and node statistics of an identical network from the cache
+     * @param cache
+     * @return true if the cache had them
+     */
+    public boolean LookupObjectiveValues(FitnessCache cache)
+    {
+        double cachedErrorRate = cache.Get(fartmap);
+        if (Double.isNaN(cachedErrorRate))
+            return false;
+
+        errorRate = cachedErrorRate;
+        truncated = false;
+        complexity = fartmap.Size();
+        return true;
+    }
+
+    /**
+     * Records the objective values and node statistics in the cache, unless they are truncated
+     * @param cache
+     */
+    public void CacheObjectiveValues(FitnessCache cache)
+    {
+        if (!truncated)
+            cache.Put(fartmap, errorRate);
+    }
+
+    /**
+     * Returns true if the last validation stopped early, in which case the error rate is only a
+     * lower bound
+     * @return
+     */
+    public boolean IsTruncated()
+    {
+        return truncated;
     }
 
     public double GetErrorRate()
@@ -100,39 +203,14 @@ public class Chromosome implements Comparable<Chromosome>
         return false;
     }
 
-    /**
-     * Compute the strength value for this chromosome (Number of solutions this chromosome dominates)
-     * @param chromos
-     * @return
-     */
-    public void ComputeStrengthValue(ArrayList<Chromosome> chromos)
+    public void SetStrengthValue(int strengthValue)
     {
-        strengthValue = 0;
-        for (Chromosome chromo : chromos)
-            if (this.Dominates(chromo))
-                strengthValue++;
+        this.strengthValue = strengthValue;
     }
 
-    public void ComputeFitness(ArrayList<Chromosome> chromos)
+    public void SetFitness(double fitness)
     {
-        double rawFitness = 0;
-        int k = (int)Math.round(Math.sqrt(chromos.size()));
-        ArrayList<Double> chromoDistances = new ArrayList<Double>();
-
-        for (Chromosome chromo : chromos)
-        {
-            //Update raw fitness
-            if (chromo.Dominates(this))
-                rawFitness += chromo.GetStrengthValue();
-
-            //Compute distance in objective space
-            chromoDistances.add(Point.distance(errorRate, complexity, chromo.GetErrorRate(), chromo.GetComplexity()));
-        }
-
-        //Sort
-        Collections.sort(chromoDistances);
-
-        fitness = rawFitness + 1.0/(chromoDistances.get(k) + 2.0);
+        this.fitness = fitness;
     }
 
     @Override
@@ -148,16 +226,21 @@ public class Chromosome implements Comparable<Chromosome>
 
     public void DoPrune(Random random)
     {
-        ArrayList<Node> nodes = fartmap.GetNodes();
+        CategoryStore nodes = fartmap.GetCategoryStore();
         ArrayList<Node> deleteList = new ArrayList<Node>();
 
         //Mark nodes for deletion
-        for (Node node : nodes)
+        for (Node node : fartmap.GetNodes())
             if (random.nextDouble() < 1.0 - node.GetConfidenceFactor())
                 deleteList.add(node);
 
-        //Get all nodes that represent each label
-        Map<Integer, ArrayList<Node>> nodeLabelMap = GetNodesForLabel(nodes);
+        //Count the nodes that represent each label
+        Map<Integer, Integer> labelCounts = new HashMap<Integer, Integer>();
+        for (int i = 0; i < nodes.Size(); i++)
+        {
+            Integer count = labelCounts.get(nodes.GetLabel(i));
+            labelCounts.put(nodes.GetLabel(i), count == null ? 1 : count + 1);
+        }
 
         Collections.sort(deleteList, new Comparator<Node>() {
             @Override
@@ -167,40 +250,44 @@ public class Chromosome implements Comparable<Chromosome>
         } );
 
         //Delete nodes marked for deletion
+        boolean[] deleted = new boolean[nodes.Size()];
         for (Node markedNode : deleteList)
         {
-            for (int i = nodes.size()-1; i >= 0; i--)
+            //Delete marked node if there exists a different node with the same label
+            int count = labelCounts.get(markedNode.GetLabel());
+            if (count > 1)
             {
-                //Delete marked node if there exists a different node with the same label
-                if (markedNode != nodes.get(i) && markedNode.GetLabel() == nodes.get(i).GetLabel())
-                {
-                    nodes.remove(markedNode);
-                    break;
-                }
+                deleted[markedNode.GetIndex()] = true;
+                labelCounts.put(markedNode.GetLabel(), count - 1);
             }
         }
+        nodes.Remove(deleted);
     }
 
     public void DoMutation(Random random, double mutationParam)
     {
-        for (Node node : fartmap.GetNodes())
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        int dims = nodes.Dimensions();
+
+        for (int node = 0; node < nodes.Size(); node++)
         {
-            Double[] d = node.GetPattern();
             int start, end;
 
             if (random.nextDouble() < 0.5)
             {
                 start = 0;
-                end = node.GetPattern().length/2;
+                end = dims/2;
             }
             else
             {
-                start = node.GetPattern().length/2;
-                end = node.GetPattern().length;
+                start = dims/2;
+                end = dims;
             }
 
-            double z = random.nextGaussian() * mutationParam *(1-node.GetConfidenceFactor());
-            for (int i = start; i < end; i++)
+            double z = random.nextGaussian() * mutationParam *(1-nodes.GetConfidenceFactor(node));
+            nodes.BeginUpdate(node);
+            double[] d = nodes.GetWeights();
+            for (int i = nodes.Offset(node) + start; i < nodes.Offset(node) + end; i++)
             {
                 d[i] += z;
                 if (d[i] < 0.0)
@@ -208,6 +295,7 @@ public class Chromosome implements Comparable<Chromosome>
                 else if (d[i] > 1.0)
                     d[i] = 1.0;
             }
+            nodes.Update(node);
         }
     }
 
@@ -250,8 +338,8 @@ public class Chromosome implements Comparable<Chromosome>
 
         //Create new chromosome from selected nodes and reset nodes
         Chromosome newChromo = new Chromosome(newChromoNodes, baselineVigilance, choiceParam);
-        for (Node node : newChromo.GetFuzzyARTMAP().GetNodes())
-            node.Reset();
+        newChromo.GetFuzzyARTMAP().GetCategoryStore().Reset();
+        newChromo.GetFuzzyARTMAP().SetIndexed(chromoA.GetFuzzyARTMAP().IsIndexed());
 
         return newChromo;
     }
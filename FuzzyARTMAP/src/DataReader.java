@@ -1,18 +1,67 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * Created by vic on 4/4/14.
+ *
+ * Reads a comma separated data set of features followed by an integer label. The file is memory
+ * mapped and parsed in place without creating a String per value. The number of features is taken
+ * from the first row, which may be a header. Features are stored as primitive columns.
+ *
+ * The parsed data set is cached in a binary file next to the CSV (data-training.csv is cached in
+ * data-training.bin) and loaded from there on later runs. The cache records the size and
+ * modification time of the CSV and is rebuilt whenever they change. The cache file is little
+ * endian:
+ *   magic "MGDS", version, CSV size, CSV modification time, rows, features,
+ *   header column count and names (length prefixed UTF-8), label dictionary (count, values),
+ *   padding to a multiple of 8 bytes, feature columns (rows doubles each),
+ *   label column (rows indices into the label dictionary)
  */
 public class DataReader
 {
     private static String FILE_EXTENSION = ".csv";
+    private static String CACHE_EXTENSION = ".bin";
     private static String DELIM = "-";
 
-    Map<Double[], Integer> inputMap = new LinkedHashMap<Double[], Integer>();
+    private static boolean USE_CACHE = true;
+    private static int CACHE_MAGIC = 0x5344474D; //"MGDS" little endian
+    private static int CACHE_VERSION = 1;
+
+    //Size of each mapped region of the file
+    private static int CHUNK_SIZE = 1 << 30;
+
+    //Powers of ten that are exactly representable as doubles
+    private static double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private String fileName;
+    private String cacheFileName;
+    private String[] header;
+    private int featureCount = -1;
+    private int size;
+    private double[][] columns;
+    private int[] labels;
+
+    private Dataset dataset;
+
+    //Parser state
+    private int line;
+    private int field;
+    private double[] row;
 
     public enum Type
     {
@@ -25,47 +74,538 @@ public class DataReader
         switch (suffix)
         {
             case TRAINING:
-                suffixString  = "training" + FILE_EXTENSION;
+                suffixString  = "training";
                 break;
             case VALIDATION:
-                suffixString = "validation" + FILE_EXTENSION;
+                suffixString = "validation";
                 break;
             case TESTING:
-                suffixString = "testing" + FILE_EXTENSION;
+                suffixString = "testing";
                 break;
         }
+        fileName = prefix + DELIM + suffixString + FILE_EXTENSION;
+        cacheFileName = prefix + DELIM + suffixString + CACHE_EXTENSION;
+
+        try
+        {
+            if (!USE_CACHE || !ReadCache())
+            {
+                Read();
+                if (USE_CACHE)
+                    WriteCache();
+            }
+        } catch (IOException e)
+        {
+            System.out.println("IOException occurred while reading " + fileName + ".");
+            System.exit(1);
+        } catch (NumberFormatException e)
+        {
+            System.out.println("Invalid value on line " + line + " of " + fileName + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void Read() throws IOException
+    {
+        FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try
+        {
+            long fileSize = channel.size();
+            long position = 0;
+
+            labels = new int[1024];
+            line = 0;
+
+            //Map the file in chunks, each ending on a line boundary
+            while (position < fileSize)
+            {
+                long length = Math.min(CHUNK_SIZE, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == fileSize;
+
+                int end = (int)length;
+                if (!last)
+                {
+                    while (end > 0 && buffer.get(end - 1) != '\n')
+                        end--;
+                    if (end == 0)
+                        throw new IOException("Line longer than " + CHUNK_SIZE + " bytes in " + fileName);
+                }
+
+                Parse(buffer, end);
+                position += end;
+            }
+        } finally
+        {
+            channel.close();
+        }
+
+        if (featureCount < 0)
+            featureCount = 0;
+        for (int i = 0; columns != null && i < featureCount; i++)
+            columns[i] = Arrays.copyOf(columns[i], size);
+        labels = Arrays.copyOf(labels, size);
+    }
+
+    /**
+     * Loads the data set from the binary cache if it exists and matches the CSV
+     * @return false if the cache is missing, out of date or unreadable
+     */
+    private boolean ReadCache()
+    {
+        try
+        {
+            return ReadCacheFile();
+        } catch (IOException e)
+        {
+        } catch (RuntimeException e)
+        {
+            //Truncated or corrupt cache
+        }
+
+        header = null;
+        featureCount = -1;
+        size = 0;
+        return false;
+    }
+
+    private boolean ReadCacheFile() throws IOException
+    {
+        Path source = Paths.get(fileName);
+        Path cache = Paths.get(cacheFileName);
+        if (!Files.exists(cache))
+            return false;
 
+        FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ);
         try
         {
-            BufferedReader br = new BufferedReader(new FileReader(prefix + DELIM + suffixString));
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), CHUNK_SIZE));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < 32 || buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION
+                    || buffer.getLong() != Files.size(source)
+                    || buffer.getLong() != Files.getLastModifiedTime(source).toMillis())
+                return false;
+
+            size = buffer.getInt();
+            featureCount = buffer.getInt();
 
-            //Read file into arraylist
-            String line = br.readLine();
-            while (line != null)
+            int headerCount = buffer.getInt();
+            if (headerCount > 0)
             {
-                String[] parts = line.split("\\s*,\\s*");
+                header = new String[headerCount];
+                for (int i = 0; i < headerCount; i++)
+                {
+                    byte[] name = new byte[buffer.getInt()];
+                    buffer.get(name);
+                    header[i] = new String(name, StandardCharsets.UTF_8);
+                }
+            }
 
-                Double[] pattern = new Double[4];
-                pattern[0] = new Double(parts[0]);
-                pattern[1] = new Double(parts[1]);
-                pattern[2] = new Double(1.0 - pattern[0]);
-                pattern[3] = new Double(1.0 - pattern[1]);
+            int[] labelDictionary = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(labelDictionary);
+            long position = Align(buffer.position() + 4L * labelDictionary.length);
 
-                Integer label = new Integer(parts[2]);
+            //Map each column separately so that data sets larger than 2GB can be loaded
+            columns = new double[featureCount][size];
+            for (int i = 0; i < featureCount; i++)
+            {
+                channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * size)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(columns[i]);
+                position += 8L * size;
+            }
+
+            labels = new int[size];
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * size)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(labels);
+            for (int i = 0; i < size; i++)
+                labels[i] = labelDictionary[labels[i]];
+        } finally
+        {
+            channel.close();
+        }
+
+        return true;
+    }
 
-                inputMap.put(pattern, label);
+    /**
+     * Writes the binary cache of the data set, replacing any existing cache atomically
+     */
+    private void WriteCache()
+    {
+        Path source = Paths.get(fileName);
+        Path cache = Paths.get(cacheFileName);
+        Path temp = Paths.get(cacheFileName + ".tmp");
+
+        //Label dictionary
+        TreeSet<Integer> distinctLabels = new TreeSet<Integer>();
+        for (int i = 0; i < size; i++)
+            distinctLabels.add(labels[i]);
+        int[] labelDictionary = new int[distinctLabels.size()];
+        Map<Integer, Integer> labelIndex = new LinkedHashMap<Integer, Integer>();
+        for (int label : distinctLabels)
+        {
+            labelIndex.put(label, labelIndex.size());
+            labelDictionary[labelIndex.size() - 1] = label;
+        }
+
+        byte[][] names = new byte[header != null ? header.length : 0][];
+        int headerBytes = 0;
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = header[i].getBytes(StandardCharsets.UTF_8);
+            headerBytes += 4 + names[i].length;
+        }
+
+        try
+        {
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try
+            {
+                long headerSize = Align(36 + headerBytes + 4 + 4L * labelDictionary.length);
+                ByteBuffer buffer = ByteBuffer.allocate((int)headerSize).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION);
+                buffer.putLong(Files.size(source)).putLong(Files.getLastModifiedTime(source).toMillis());
+                buffer.putInt(size).putInt(featureCount);
+                buffer.putInt(names.length);
+                for (byte[] name : names)
+                    buffer.putInt(name.length).put(name);
+                buffer.putInt(labelDictionary.length);
+                for (int label : labelDictionary)
+                    buffer.putInt(label);
+                buffer.position(buffer.capacity());
+                buffer.flip();
+                WriteFully(channel, buffer);
 
-                line = br.readLine();
+                //Columns, written in blocks
+                ByteBuffer block = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < featureCount; i++)
+                {
+                    for (int j = 0; j < size; j++)
+                    {
+                        if (block.remaining() < 8)
+                            WriteBlock(channel, block);
+                        block.putDouble(columns[i][j]);
+                    }
+                }
+                for (int j = 0; j < size; j++)
+                {
+                    if (block.remaining() < 4)
+                        WriteBlock(channel, block);
+                    block.putInt(labelIndex.get(labels[j]));
+                }
+                WriteBlock(channel, block);
+            } finally
+            {
+                channel.close();
             }
+
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e)
         {
-            System.out.println("IOException occurred while reading " + prefix + DELIM + suffixString + ".");
-            System.exit(1);
+            System.out.println("IOException occurred while writing " + cacheFileName + ", continuing without cache.");
+        }
+    }
+
+    private static void WriteBlock(FileChannel channel, ByteBuffer block) throws IOException
+    {
+        block.flip();
+        WriteFully(channel, block);
+        block.clear();
+    }
+
+    private static void WriteFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static long Align(long position)
+    {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Parses the lines in buffer[0, end)
+     * @param buffer
+     * @param end
+     */
+    private void Parse(MappedByteBuffer buffer, int end)
+    {
+        int lineStart = 0;
+        while (lineStart < end)
+        {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+
+            line++;
+            ParseLine(buffer, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private void ParseLine(MappedByteBuffer buffer, int start, int end)
+    {
+        //Skip blank lines
+        int first = start;
+        while (first < end && IsWhitespace(buffer.get(first)))
+            first++;
+        if (first == end)
+            return;
+
+        //The first row sets the number of features and may be a header
+        if (featureCount < 0)
+        {
+            int fields = 1;
+            for (int i = start; i < end; i++)
+                if (buffer.get(i) == ',')
+                    fields++;
+            featureCount = fields - 1;
+            columns = new double[featureCount][labels.length];
+            row = new double[featureCount];
+
+            if (IsHeader(buffer, start, end))
+            {
+                header = Decode(buffer, start, end).trim().split("\\s*,\\s*");
+                return;
+            }
+        }
+
+        field = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++)
+        {
+            if (i == end || buffer.get(i) == ',')
+            {
+                if (field < featureCount)
+                    row[field] = ParseDouble(buffer, fieldStart, i);
+                else if (field == featureCount)
+                    AddRow(ParseInt(buffer, fieldStart, i));
+                else
+                    throw new NumberFormatException("expected " + (featureCount + 1) + " values");
+
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+
+        if (field != featureCount + 1)
+            throw new NumberFormatException("expected " + (featureCount + 1) + " values");
+    }
+
+    private void AddRow(int label)
+    {
+        if (size == labels.length)
+        {
+            labels = Arrays.copyOf(labels, size * 2);
+            for (int i = 0; i < featureCount; i++)
+                columns[i] = Arrays.copyOf(columns[i], size * 2);
+        }
+
+        for (int i = 0; i < featureCount; i++)
+            columns[i][size] = row[i];
+        labels[size] = label;
+        size++;
+    }
+
+    private boolean IsHeader(MappedByteBuffer buffer, int start, int end)
+    {
+        int fieldStart = start;
+        for (int i = start; i <= end; i++)
+        {
+            if (i == end || buffer.get(i) == ',')
+            {
+                try
+                {
+                    ParseDouble(buffer, fieldStart, i);
+                } catch (NumberFormatException e)
+                {
+                    return true;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a decimal number in buffer[start, end). Numbers with at most 15 significant digits and
+     * a small exponent are computed with a single correctly rounded multiplication or division; any
+     * other text falls back to {@link Double#parseDouble}, so the result is always identical to it.
+     */
+    private static double ParseDouble(MappedByteBuffer buffer, int start, int end)
+    {
+        while (start < end && IsWhitespace(buffer.get(start)))
+            start++;
+        while (end > start && IsWhitespace(buffer.get(end - 1)))
+            end--;
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+            negative = buffer.get(i++) == '-';
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        boolean fast = true;
+
+        //Integer part
+        while (i < end && IsDigit(buffer.get(i)))
+        {
+            anyDigits = true;
+            if (mantissa != 0 || buffer.get(i) != '0')
+            {
+                if (++digits > 15)
+                    fast = false;
+                else
+                    mantissa = mantissa*10 + (buffer.get(i) - '0');
+            }
+            i++;
+        }
+
+        //Fraction part
+        if (i < end && buffer.get(i) == '.')
+        {
+            i++;
+            while (i < end && IsDigit(buffer.get(i)))
+            {
+                anyDigits = true;
+                if (mantissa != 0 || buffer.get(i) != '0')
+                {
+                    if (++digits > 15)
+                        fast = false;
+                    else
+                    {
+                        mantissa = mantissa*10 + (buffer.get(i) - '0');
+                        exponent--;
+                    }
+                }
+                else
+                    exponent--;
+                i++;
+            }
         }
+
+        //Exponent part
+        if (anyDigits && i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E'))
+        {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+                negativeExponent = buffer.get(i++) == '-';
+
+            int value = 0;
+            boolean anyExponentDigits = false;
+            while (i < end && IsDigit(buffer.get(i)))
+            {
+                anyExponentDigits = true;
+                value = Math.min(value*10 + (buffer.get(i++) - '0'), 100000);
+            }
+            if (!anyExponentDigits)
+                fast = false;
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (!anyDigits || i != end || !fast || exponent < -22 || exponent > 22)
+            return Double.parseDouble(Decode(buffer, start, end));
+
+        double result = mantissa;
+        if (exponent < 0)
+            result /= POWERS_OF_TEN[-exponent];
+        else
+            result *= POWERS_OF_TEN[exponent];
+
+        return negative ? -result : result;
+    }
+
+    private static int ParseInt(MappedByteBuffer buffer, int start, int end)
+    {
+        while (start < end && IsWhitespace(buffer.get(start)))
+            start++;
+        while (end > start && IsWhitespace(buffer.get(end - 1)))
+            end--;
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+            negative = buffer.get(i++) == '-';
+
+        if (i == end || end - i > 9)
+            return Integer.parseInt(Decode(buffer, start, end));
+
+        int result = 0;
+        for (; i < end; i++)
+        {
+            if (!IsDigit(buffer.get(i)))
+                throw new NumberFormatException("For input string: \"" + Decode(buffer, start, end) + "\"");
+            result = result*10 + (buffer.get(i) - '0');
+        }
+
+        return negative ? -result : result;
+    }
+
+    private static String Decode(MappedByteBuffer buffer, int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++)
+            bytes[i - start] = buffer.get(i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean IsDigit(byte b)
+    {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean IsWhitespace(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Returns the complement coded input patterns and their labels
+     * @return
+     */
+    public Dataset GetDataset()
+    {
+        if (dataset == null)
+            dataset = Dataset.FromColumns(columns, labels);
+        return dataset;
+    }
+
+    /**
+     * Returns the feature values, one array of Size() values per feature
+     * @return
+     */
+    public double[][] GetColumns()
+    {
+        return columns;
+    }
+
+    public int[] GetLabels()
+    {
+        return labels;
+    }
+
+    public int GetFeatureCount()
+    {
+        return featureCount;
+    }
+
+    /**
+     * Returns the column names if the file has a header row, otherwise null
+     * @return
+     */
+    public String[] GetHeader()
+    {
+        return header;
     }
 
-    public Map<Double[], Integer> GetInputMap()
+    public int Size()
     {
-        return inputMap;
+        return size;
     }
 }
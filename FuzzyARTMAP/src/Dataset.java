@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A data set of complement coded input patterns and their labels, backed by primitive arrays. The
+ * patterns are stored row-major in a single array next to a label column. Slices, selections and
+ * shuffles are views that share the arrays of the data set they were taken from.
+ */
+public class Dataset
+{
+    private int dims;
+    private double[] patterns;
+    private int[] labels;
+
+    //Rows of this view in the backing arrays, null for the contiguous rows [start, start + size)
+    private int[] rows;
+    private int start;
+    private int size;
+
+    /**
+     * Creates a data set from row-major patterns
+     * @param patterns
+     * @param labels
+     * @param dims length of each pattern
+     */
+    public Dataset(double[] patterns, int[] labels, int dims)
+    {
+        assert patterns.length == labels.length * dims;
+
+        this.dims = dims;
+        this.patterns = patterns;
+        this.labels = labels;
+        this.size = labels.length;
+    }
+
+    private Dataset(Dataset dataset, int[] rows, int start, int size)
+    {
+        dims = dataset.dims;
+        patterns = dataset.patterns;
+        labels = dataset.labels;
+        this.rows = rows;
+        this.start = start;
+        this.size = size;
+    }
+
+    /**
+     * Creates a data set of complement coded patterns [x1..xn, 1-x1..1-xn] from feature columns
+     * @param columns feature values, one array per feature
+     * @param labels
+     * @return
+     */
+    public static Dataset FromColumns(double[][] columns, int[] labels)
+    {
+        int featureCount = columns.length;
+        int dims = 2*featureCount;
+        double[] patterns = new double[labels.length * dims];
+
+        for (int k = 0; k < featureCount; k++)
+        {
+            double[] column = columns[k];
+            for (int i = 0; i < labels.length; i++)
+            {
+                patterns[i*dims + k] = column[i];
+                patterns[i*dims + featureCount + k] = 1.0 - column[i];
+            }
+        }
+
+        return new Dataset(patterns, Arrays.copyOf(labels, labels.length), dims);
+    }
+
+    public int Size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the length of each pattern
+     * @return
+     */
+    public int Dimensions()
+    {
+        return dims;
+    }
+
+    /**
+     * Returns a copy of pattern i
+     * @param i
+     * @return
+     */
+    public double[] Features(int i)
+    {
+        int offset = Offset(i);
+        return Arrays.copyOfRange(patterns, offset, offset + dims);
+    }
+
+    public int Label(int i)
+    {
+        return labels[Row(i)];
+    }
+
+    /**
+     * Returns the backing pattern array, pattern i occupies [Offset(i), Offset(i) + Dimensions())
+     * @return
+     */
+    public double[] GetPatterns()
+    {
+        return patterns;
+    }
+
+    public int Offset(int i)
+    {
+        return Row(i) * dims;
+    }
+
+    private int Row(int i)
+    {
+        assert i >= 0 && i < size;
+
+        return rows == null ? start + i : rows[i];
+    }
+
+    /**
+     * Returns a view of patterns [from, to)
+     * @param from
+     * @param to
+     * @return
+     */
+    public Dataset Slice(int from, int to)
+    {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("Slice [" + from + ", " + to + ") of " + size);
+
+        if (rows == null)
+            return new Dataset(this, null, start + from, to - from);
+
+        return new Dataset(this, Arrays.copyOfRange(rows, from, to), 0, to - from);
+    }
+
+    /**
+     * Returns a view of the given patterns, in the given order
+     * @param indices
+     * @return
+     */
+    public Dataset Select(int[] indices)
+    {
+        int[] selected = new int[indices.length];
+        for (int i = 0; i < indices.length; i++)
+            selected[i] = Row(indices[i]);
+
+        return new Dataset(this, selected, 0, selected.length);
+    }
+
+    /**
+     * Returns a view of the patterns in random order. The permutation is the one
+     * {@link java.util.Collections#shuffle(java.util.List, Random)} produces for the same generator.
+     * @param random
+     * @return
+     */
+    public Dataset Shuffle(Random random)
+    {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++)
+            indices[i] = i;
+
+        for (int i = size; i > 1; i--)
+        {
+            int j = random.nextInt(i);
+            int swap = indices[i - 1];
+            indices[i - 1] = indices[j];
+            indices[j] = swap;
+        }
+
+        return Select(indices);
+    }
+
+    /**
+     * Splits the data set in two, with each label divided in the same proportion. The patterns of
+     * each part keep their original order.
+     * @param fraction fraction of the patterns of each label in the first part
+     * @param random
+     * @return the two parts
+     */
+    public Dataset[] StratifiedSplit(double fraction, Random random)
+    {
+        //Patterns for each label
+        Map<Integer, ArrayList<Integer>> labelMap = new LinkedHashMap<Integer, ArrayList<Integer>>();
+        for (int i = 0; i < size; i++)
+        {
+            ArrayList<Integer> indices = labelMap.get(Label(i));
+            if (indices == null)
+            {
+                indices = new ArrayList<Integer>();
+                labelMap.put(Label(i), indices);
+            }
+            indices.add(i);
+        }
+
+        boolean[] first = new boolean[size];
+        int firstCount = 0;
+        for (ArrayList<Integer> indices : labelMap.values())
+        {
+            int count = (int)Math.round(fraction * indices.size());
+            for (int i = 0; i < count; i++)
+            {
+                //Partial Fisher-Yates shuffle selects count patterns of this label
+                int j = i + random.nextInt(indices.size() - i);
+                int swap = indices.get(i);
+                indices.set(i, indices.get(j));
+                indices.set(j, swap);
+                first[indices.get(i)] = true;
+            }
+            firstCount += count;
+        }
+
+        int[] firstIndices = new int[firstCount];
+        int[] secondIndices = new int[size - firstCount];
+        for (int i = 0, a = 0, b = 0; i < size; i++)
+        {
+            if (first[i])
+                firstIndices[a++] = i;
+            else
+                secondIndices[b++] = i;
+        }
+
+        return new Dataset[] { Select(firstIndices), Select(secondIndices) };
+    }
+}
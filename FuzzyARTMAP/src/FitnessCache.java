@@ -0,0 +1,272 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded least recently used cache of validation results for one validation set, keyed on the
+ * content of a Fuzzy ARTMAP: the category weights and labels in node order and the baseline
+ * vigilance and choice parameters. Networks with the same content validate to the same error rate
+ * and node statistics, so a hit restores them without presenting the validation set again.
+ *
+ * The key holds a copy of the content and compares it exactly, the content hash only selects the
+ * bucket. All methods may be called concurrently.
+ *
+ * The cache can be written to and read back from a checkpoint, with its entries in the same least
+ * recently used order and its hit and miss counts.
+ */
+public class FitnessCache
+{
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of networks kept, the least recently used is evicted first
+     */
+    public FitnessCache(final int capacity)
+    {
+        this.capacity = capacity;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+            {
+                return size() > FitnessCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Restores the error rate and node statistics recorded for a network with the same content
+     * @param fartmap
+     * @return the error rate, or NaN if the network is not in the cache
+     */
+    public double Get(FuzzyARTMAP fartmap)
+    {
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(new Key(fartmap));
+        }
+
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+            return Double.NaN;
+        }
+        hits.incrementAndGet();
+
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        for (int i = 0; i < nodes.Size(); i++)
+        {
+            nodes.SetCounts(i, entry.accuracyCounts[i], entry.frequencyCounts[i]);
+            nodes.SetAccuracy(i, entry.accuracies[i]);
+            nodes.SetFrequency(i, entry.frequencies[i]);
+        }
+
+        return entry.errorRate;
+    }
+
+    /**
+     * Records the error rate and node statistics of a network that was just validated
+     * @param fartmap
+     * @param errorRate
+     */
+    public void Put(FuzzyARTMAP fartmap, double errorRate)
+    {
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        Entry entry = new Entry(nodes.Size());
+        entry.errorRate = errorRate;
+        for (int i = 0; i < nodes.Size(); i++)
+        {
+            entry.accuracyCounts[i] = nodes.GetAccuracyCount(i);
+            entry.frequencyCounts[i] = nodes.GetFrequencyCount(i);
+            entry.accuracies[i] = nodes.GetAccuracy(i);
+            entry.frequencies[i] = nodes.GetFrequency(i);
+        }
+
+        Key key = new Key(fartmap);
+        synchronized (entries)
+        {
+            entries.put(key, entry);
+        }
+    }
+
+    public long GetHits()
+    {
+        return hits.get();
+    }
+
+    public long GetMisses()
+    {
+        return misses.get();
+    }
+
+    public int Size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Writes the capacity, counters and entries, from least to most recently used
+     * @param output
+     * @throws IOException
+     */
+    public void Write(DataOutputStream output) throws IOException
+    {
+        synchronized (entries)
+        {
+            output.writeInt(capacity);
+            output.writeLong(hits.get());
+            output.writeLong(misses.get());
+            output.writeInt(entries.size());
+            for (Map.Entry<Key, Entry> mapEntry : entries.entrySet())
+            {
+                Key key = mapEntry.getKey();
+                Entry entry = mapEntry.getValue();
+                output.writeDouble(key.baselineVigilanceParam);
+                output.writeDouble(key.choiceParam);
+                output.writeInt(key.labels.length);
+                output.writeInt(key.weights.length);
+                for (double weight : key.weights)
+                    output.writeDouble(weight);
+                for (int i = 0; i < key.labels.length; i++)
+                {
+                    output.writeInt(key.labels[i]);
+                    output.writeInt(entry.accuracyCounts[i]);
+                    output.writeInt(entry.frequencyCounts[i]);
+                    output.writeDouble(entry.accuracies[i]);
+                    output.writeDouble(entry.frequencies[i]);
+                }
+                output.writeDouble(entry.errorRate);
+            }
+        }
+    }
+
+    /**
+     * Reads a cache written by {@link #Write(DataOutputStream)}
+     * @param input
+     * @return
+     * @throws IOException
+     */
+    public static FitnessCache Read(DataInputStream input) throws IOException
+    {
+        FitnessCache cache = new FitnessCache(input.readInt());
+        cache.hits.set(input.readLong());
+        cache.misses.set(input.readLong());
+        int count = input.readInt();
+        for (int n = 0; n < count; n++)
+        {
+            double baselineVigilanceParam = input.readDouble();
+            double choiceParam = input.readDouble();
+            int size = input.readInt();
+            double[] weights = new double[input.readInt()];
+            for (int i = 0; i < weights.length; i++)
+                weights[i] = input.readDouble();
+
+            int[] labels = new int[size];
+            Entry entry = new Entry(size);
+            for (int i = 0; i < size; i++)
+            {
+                labels[i] = input.readInt();
+                entry.accuracyCounts[i] = input.readInt();
+                entry.frequencyCounts[i] = input.readInt();
+                entry.accuracies[i] = input.readDouble();
+                entry.frequencies[i] = input.readDouble();
+            }
+            entry.errorRate = input.readDouble();
+
+            cache.entries.put(new Key(weights, labels, baselineVigilanceParam, choiceParam), entry);
+        }
+
+        return cache;
+    }
+
+    private static class Key
+    {
+        private final double[] weights;
+        private final int[] labels;
+        private final double baselineVigilanceParam;
+        private final double choiceParam;
+        private final int hash;
+
+        private Key(FuzzyARTMAP fartmap)
+        {
+            this(Arrays.copyOf(fartmap.GetCategoryStore().GetWeights(), fartmap.Size() * fartmap.GetCategoryStore().Dimensions()),
+                    Labels(fartmap.GetCategoryStore()), fartmap.GetBaselineVigilanceParam(), fartmap.GetChoiceParam());
+        }
+
+        private Key(double[] weights, int[] labels, double baselineVigilanceParam, double choiceParam)
+        {
+            this.weights = weights;
+            this.labels = labels;
+            this.baselineVigilanceParam = baselineVigilanceParam;
+            this.choiceParam = choiceParam;
+
+            long h = Double.doubleToLongBits(baselineVigilanceParam) * 31 + Double.doubleToLongBits(choiceParam);
+            for (double weight : weights)
+                h = Mix(h + Double.doubleToLongBits(weight));
+            for (int label : labels)
+                h = Mix(h + label);
+            hash = (int)(h ^ (h >>> 32));
+        }
+
+        private static int[] Labels(CategoryStore nodes)
+        {
+            int[] labels = new int[nodes.Size()];
+            for (int i = 0; i < labels.length; i++)
+                labels[i] = nodes.GetLabel(i);
+            return labels;
+        }
+
+        private static long Mix(long z)
+        {
+            z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+            return z ^ (z >>> 29);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object b)
+        {
+            if (!(b instanceof Key)) return false;
+
+            Key key = (Key)b;
+            return hash == key.hash
+                    && Double.compare(baselineVigilanceParam, key.baselineVigilanceParam) == 0
+                    && Double.compare(choiceParam, key.choiceParam) == 0
+                    && Arrays.equals(labels, key.labels)
+                    && Arrays.equals(weights, key.weights);
+        }
+    }
+
+    private static class Entry
+    {
+        private double errorRate;
+        private int[] accuracyCounts;
+        private int[] frequencyCounts;
+        private double[] accuracies;
+        private double[] frequencies;
+
+        private Entry(int size)
+        {
+            accuracyCounts = new int[size];
+            frequencyCounts = new int[size];
+            accuracies = new double[size];
+            frequencies = new double[size];
+        }
+    }
+}
@@ -8,241 +8,567 @@ public class FuzzyARTMAP
     private double baselineVigilenceParam;
     private double choiceParam;
 
-    private ArrayList<Node> nodes = new ArrayList<Node>();
+    private CategoryStore nodes = new CategoryStore();
 
-    public FuzzyARTMAP(Map<Double[], Integer> inputPatterns, double choiceParam, double baselineVigilenceParam)
+    //Training limits, 0 trains until an epoch makes no updates
+    private int maxEpochs = 0;
+    private double convergenceTolerance = 0.0;
+
+    //Learning rate (beta), 1 is fast learning. Match tracking raises vigilance this far above the
+    //match of a category that fails the label test.
+    private double learningRate = 1.0;
+    private double matchTrackingEpsilon = 0.0;
+
+    //Statistics of each epoch of the last training on a data set, null if not trained on one
+    private ArrayList<TrainingEpoch> trainingEpochs;
+
+    //Scratch space of the calling thread, shared by all networks so that training, validation and
+    //prediction do not allocate per pattern
+    private static ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue()
+        {
+            return new Scratch();
+        }
+    };
+
+    //The last validation stopped early at its error bound, after presenting this many patterns
+    private boolean validationTruncated = false;
+    private int validationSamples = 0;
+
+    //Spatial index over the category boxes, null to score every category for every input
+    private CategoryIndex index;
+
+    /**
+     * Creates an empty Fuzzy ARTMAP, nodes are added by training
+     * @param choiceParam
+     * @param baselineVigilenceParam
+     */
+    public FuzzyARTMAP(double choiceParam, double baselineVigilenceParam)
     {
         this.choiceParam = choiceParam;
         this.baselineVigilenceParam = baselineVigilenceParam;
+    }
+
+    public FuzzyARTMAP(Dataset inputPatterns, double choiceParam, double baselineVigilenceParam)
+    {
+        this(choiceParam, baselineVigilenceParam);
+
+        Train(inputPatterns);
+    }
 
+    public FuzzyARTMAP(Dataset inputPatterns, double choiceParam, double baselineVigilenceParam, int maxEpochs, double convergenceTolerance)
+    {
+        this(choiceParam, baselineVigilenceParam);
+        this.maxEpochs = maxEpochs;
+        this.convergenceTolerance = convergenceTolerance;
+
+        Train(inputPatterns);
+    }
+
+    /**
+     * Trains on the input/output pairs until an epoch makes no updates, or until the maximum number
+     * of epochs is reached
+     * @param inputPatterns
+     * @return the number of epochs
+     */
+    public int Train(Dataset inputPatterns)
+    {
+        trainingEpochs = new ArrayList<TrainingEpoch>();
+        int epochs = 0;
         boolean weightsUpdated = true;
 
         //Loop until the weights are not updated
-        while (weightsUpdated)
+        while (weightsUpdated && (maxEpochs <= 0 || epochs < maxEpochs))
         {
-            weightsUpdated = false;
+            weightsUpdated = TrainEpoch(inputPatterns);
+            epochs++;
+        }
 
-            //Loop for input/output pairs
-            for (Map.Entry<Double[], Integer> input : inputPatterns.entrySet())
-            {
-                double vigilanceParam = baselineVigilenceParam;
+        return epochs;
+    }
 
-                //Compute activation for committed nodes
-                ArrayList<Node> sortedActivationList = GetActivation(input);
+    /**
+     * Presents every input/output pair once, updating the existing nodes in place, and records the
+     * statistics of the epoch (see {@link #GetTrainingEpochs()})
+     * @param inputPatterns
+     * @return true if any weights were updated
+     */
+    public boolean TrainEpoch(Dataset inputPatterns)
+    {
+        if (trainingEpochs == null)
+            trainingEpochs = new ArrayList<TrainingEpoch>();
+        TrainingEpoch epoch = new TrainingEpoch(trainingEpochs.size() + 1);
+        long start = System.nanoTime();
 
-                //Select node with highest activation and do vigilance/label tests
-                Double[] selectedNode = null;
-                for (Node node : sortedActivationList)
-                {
-                    //Compute vigilance
-                    double vigilance = FuzzyMath.sum(FuzzyMath.fuzzyMin(input.getKey(), node.GetPattern()))/FuzzyMath.sum(input.getKey());
+        double[] patterns = inputPatterns.GetPatterns();
+        boolean weightsUpdated = false;
 
-                    //Committed Node
-                    if (nodes.contains(node))
+        //Loop for input/output pairs
+        for (int p = 0; p < inputPatterns.Size(); p++)
+            if (Train(patterns, inputPatterns.Offset(p), inputPatterns.Dimensions(), inputPatterns.Label(p), epoch))
+                weightsUpdated = true;
+
+        epoch.End(System.nanoTime() - start, nodes.Size());
+        trainingEpochs.add(epoch);
+
+        return weightsUpdated;
+    }
+
+    /**
+     * Presents a single input/output pair, updating the existing nodes in place
+     * @param input complement coded input
+     * @param label
+     * @return true if a node was created, or the weights of the resonating node changed by more
+     * than the convergence tolerance (L1 distance)
+     */
+    public boolean Train(double[] input, int label)
+    {
+        return Train(input, 0, input.length, label, null);
+    }
+
+    /**
+     * Presents a single input/output pair stored at an offset of a larger array
+     * @param data
+     * @param offset start of the input in data
+     * @param dims length of the input
+     * @param label
+     * @param epoch statistics the update is counted in, or null
+     * @return
+     */
+    private boolean Train(double[] data, int offset, int dims, int label, TrainingEpoch epoch)
+    {
+        Scratch scratch = SCRATCH.get();
+        CategorySearch search = scratch.search;
+
+        double inputSum = FuzzyMath.sum(data, offset, dims);
+        double vigilanceParam = baselineVigilenceParam;
+
+        //Compute activation for committed nodes
+        if (index != null)
+        {
+            index.Refresh();
+            search.Begin(nodes, data, offset, dims, choiceParam, index, baselineVigilenceParam);
+        }
+        else
+            search.Begin(nodes, data, offset, dims, choiceParam);
+
+        //Select node with highest activation and do vigilance/label tests
+        for (int node = search.Next(); node >= 0; node = search.Next())
+        {
+            //Committed Node
+            if (node != search.Uncommitted())
+            {
+                //Compute vigilance
+                double vigilance = search.GetMatch(node)/inputSum;
+
+                //Vigilance and Label tests
+                if (vigilance >= vigilanceParam)
+                {
+                    if (label == nodes.GetLabel(node))
                     {
-                        //Vigilance and Label tests
-                        if (vigilance >= vigilanceParam)
+                        double[] newPattern = scratch.Pattern(dims);
+                        FuzzyMath.fuzzyMin(data, offset, nodes.GetWeights(), nodes.Offset(node), dims, newPattern);
+
+                        //Input inside the category box, the weights do not change (the most common case)
+                        if (nodes.RowEquals(node, newPattern))
+                            return false;
+
+                        //Slow learning moves the weights only part of the way to I ^ w. Written as
+                        //w + beta*(I ^ w - w) so that weights I ^ w leaves unchanged stay exact.
+                        if (learningRate < 1.0)
+                        {
+                            double[] weights = nodes.GetWeights();
+                            int nodeOffset = nodes.Offset(node);
+                            for (int k = 0; k < dims; k++)
+                                newPattern[k] = weights[nodeOffset + k] + learningRate*(newPattern[k] - weights[nodeOffset + k]);
+                        }
+
+                        //New node is not already in nodes (slow learning steps may also be too small
+                        //to change the weights)
+                        if (!nodes.RowEquals(node, newPattern) && !nodes.Contains(newPattern, label))
                         {
-                            if (input.getValue().equals(node.GetLabel()))
-                            {
-                                Node newNode = new Node(FuzzyMath.fuzzyMin(input.getKey(), node.GetPattern()), node.GetLabel());
-
-                                //New node is not already in nodes
-                                if (!nodes.contains(newNode))//!ContainsKey(newNode))
-                                {
-                                    nodes.remove(node);
-                                    nodes.add(newNode);
-
-                                    weightsUpdated = true;
-                                }
-                                //New node is already in nodes, do nothing
-
-                                break;
-                            }
-                            //Label test failed, increase vigilance
-                            else
-                            {
-                                vigilanceParam = FuzzyMath.sum(FuzzyMath.fuzzyMin(input.getKey(), node.GetPattern()))/FuzzyMath.sum(input.getKey());
-                            }
+                            boolean changed = convergenceTolerance <= 0
+                                    || FuzzyMath.distance(newPattern, 0, nodes.GetWeights(), nodes.Offset(node), dims) > convergenceTolerance;
+
+                            nodes.Remove(node);
+                            nodes.Add(newPattern, 0, dims, label);
+                            if (epoch != null)
+                                epoch.AddUpdate();
+
+                            return changed;
                         }
+                        //New node is already in nodes, do nothing
+
+                        return false;
                     }
-                    //Uncommitted Node
+                    //Label test failed, increase vigilance
                     else
                     {
-                        nodes.add(new Node(input.getKey(), input.getValue()));
-
-                        weightsUpdated = true;
-                        break;
+                        vigilanceParam = Math.max(vigilance + matchTrackingEpsilon, baselineVigilenceParam);
                     }
-
-                    //Disqualify node
-                    node.SetActivation(-1.0);
                 }
             }
+            //Uncommitted Node
+            else
+            {
+                nodes.Add(data, offset, dims, label);
+                if (epoch != null)
+                    epoch.AddCategory();
+
+                return true;
+            }
         }
+
+        return false;
     }
 
     public FuzzyARTMAP(FuzzyARTMAP fartmap)
     {
         baselineVigilenceParam = fartmap.GetBaselineVigilanceParam();
         choiceParam = fartmap.GetChoiceParam();
-
-        for (Node node : fartmap.GetNodes())
-            nodes.add(new Node(node));
+        maxEpochs = fartmap.GetMaxEpochs();
+        convergenceTolerance = fartmap.GetConvergenceTolerance();
+        learningRate = fartmap.GetLearningRate();
+        matchTrackingEpsilon = fartmap.GetMatchTrackingEpsilon();
+        nodes = new CategoryStore(fartmap.GetCategoryStore());
+        SetIndexed(fartmap.IsIndexed());
     }
 
+    /**
+     * Creates a Fuzzy ARTMAP from copies of the given nodes, which may belong to different stores
+     * @param nodes
+     * @param choiceParam
+     * @param baselineVigilenceParam
+     */
     public FuzzyARTMAP(ArrayList<Node> nodes, double choiceParam, double baselineVigilenceParam)
     {
         this.choiceParam = choiceParam;
         this.baselineVigilenceParam = baselineVigilenceParam;
-        this.nodes = nodes;
+
+        for (Node node : nodes)
+            this.nodes.Add(node.GetStore(), node.GetIndex());
+    }
+
+    public static void main(String[ ] args)
+    {
+        double[][] columns = new double[][] {
+                {0.3, 0.6, 0.2, 0.25, 0.8, 0.28},
+                {0.2, 0.7, 0.1, 0.25, 0.85, 0.5}};
+        int[] labels = new int[] {1, 1, 1, 2, 1, 2};
+
+        Dataset input = Dataset.FromColumns(columns, labels);
+
+        FuzzyARTMAP fartmap = new FuzzyARTMAP(input, 0.01, 0.7);
     }
 
     /**
-     * Calculates the bottom-up inputs for all of the nodes in the Fuzzy ARTMAP
-     * @param input
+     * Classifies a batch of complement coded inputs. The network is not modified and each thread
+     * uses its own scratch space, so any number of threads may predict concurrently as long as the
+     * network is not being trained, pruned or mutated at the same time.
+     * @param batch
      * @return
      */
-    public ArrayList<Node> GetActivation(Map.Entry<Double[], Integer> input)
+    public Prediction[] Predict(double[][] batch)
     {
-        ArrayList<Node> activationList = new ArrayList<Node>();
+        CategorySearch search = SCRATCH.get().search;
+        if (index != null)
+            index.Refresh();
+        Prediction[] predictions = new Prediction[batch.length];
 
-        //Compute activation for uncommitted nodes
-        for (Node node : nodes)
+        for (int i = 0; i < batch.length; i++)
         {
-            node.ComputeActivation(input, choiceParam);
-            activationList.add(node);
+            int node = Select(batch[i], 0, batch[i].length, search);
+            if (node >= 0)
+                predictions[i] = new Prediction(node, nodes.GetLabel(node), search.GetActivation(node));
+            else
+                predictions[i] = new Prediction(-1, Prediction.NO_LABEL, 0.0);
         }
 
-        //Add uncommitted node
-        Node uncommittedNode = new Node(input.getKey(), input.getValue());
-        uncommittedNode.SetActivation(FuzzyMath.sum(input.getKey())/(choiceParam + FuzzyMath.sum(GetAllOnes(input.getKey().length))));
-        //uncommittedNode.ComputeActivation(input, choiceParam);
-        activationList.add(uncommittedNode);
+        return predictions;
+    }
 
-        Collections.sort(activationList);
+    /**
+     * Classifies a batch of complement coded inputs, see {@link #Predict(double[][])}
+     * @param batch
+     * @return the predicted label of each input, or {@link Prediction#NO_LABEL} if no category
+     * passes the vigilance test
+     */
+    public int[] PredictLabels(double[][] batch)
+    {
+        CategorySearch search = SCRATCH.get().search;
+        if (index != null)
+            index.Refresh();
+        int[] labels = new int[batch.length];
+
+        for (int i = 0; i < batch.length; i++)
+        {
+            int node = Select(batch[i], 0, batch[i].length, search);
+            labels[i] = node >= 0 ? nodes.GetLabel(node) : Prediction.NO_LABEL;
+        }
 
-        return activationList;
+        return labels;
     }
 
     /**
-     * Returns the all ones vector
-     * @param length
-     * @return
+     * Classifies the patterns of a data set, see {@link #Predict(double[][])}
+     * @param dataset
+     * @return the predicted label of each pattern, or {@link Prediction#NO_LABEL} if no category
+     * passes the vigilance test
      */
-    private Double[] GetAllOnes(int length)
+    public int[] PredictLabels(Dataset dataset)
     {
-        Double[] result = new Double[length];
-        for (int i = 0; i < length; i++)
-            result[i] = 1.0;
-        return result;
+        CategorySearch search = SCRATCH.get().search;
+        if (index != null)
+            index.Refresh();
+        double[] patterns = dataset.GetPatterns();
+        int[] labels = new int[dataset.Size()];
+
+        for (int i = 0; i < labels.length; i++)
+        {
+            int node = Select(patterns, dataset.Offset(i), dataset.Dimensions(), search);
+            labels[i] = node >= 0 ? nodes.GetLabel(node) : Prediction.NO_LABEL;
+        }
+
+        return labels;
     }
 
-    public static void main(String[ ] args)
+    /**
+     * Returns the committed node with the highest activation that passes the baseline vigilance
+     * test, or -1 if there is none
+     * @param data
+     * @param offset start of the input in data
+     * @param dims length of the input
+     * @param search
+     * @return
+     */
+    private int Select(double[] data, int offset, int dims, CategorySearch search)
     {
-        Map<Double[], Integer> input = new LinkedHashMap<Double[], Integer>();
+        double inputSum = FuzzyMath.sum(data, offset, dims);
 
-        //TODO: Automatically compute complement
+        //Compute activation for committed nodes
+        if (index != null)
+            search.Begin(nodes, data, offset, dims, choiceParam, index, baselineVigilenceParam);
+        else
+            search.Begin(nodes, data, offset, dims, choiceParam);
 
-        input.put(new Double[] {0.3, 0.2, 0.7, 0.8}, new Integer(1));
-        input.put(new Double[] {0.6, 0.7, 0.4, 0.3}, new Integer(1));
-        input.put(new Double[] {0.2, 0.1, 0.8, 0.9}, new Integer(1));
-        input.put(new Double[] {0.25, 0.25, 0.75, 0.75}, new Integer(2));
-        input.put(new Double[] {0.8, 0.85, 0.2, 0.15}, new Integer(1));
-        input.put(new Double[] {0.28, 0.5, 0.72, 0.5}, new Integer(2));
+        //Select node with highest activation and do vigilance tests
+        for (int node = search.Next(); node >= 0; node = search.Next())
+        {
+            //Committed Node, vigilance test
+            if (node != search.Uncommitted() && search.GetMatch(node)/inputSum >= baselineVigilenceParam)
+                return node;
 
-        FuzzyARTMAP fartmap = new FuzzyARTMAP(input, 0.01, 0.7);
-    }
+            //Uncommitted Node, do nothing
+        }
 
+        return -1;
+    }
 
+    /**
+     * Compute the error rate of the Fuzzy ARTMAP using the validation set. The accuracy and
+     * frequency statistics of the nodes are updated, so a network must not be validated by more
+     * than one thread at a time; different networks can be validated concurrently.
+     * @param validationSet
+     * @return
+     */
+    public double Validate(Dataset validationSet)
+    {
+        return Validate(validationSet, Double.POSITIVE_INFINITY);
+    }
 
     /**
-     * Compute the error rate of the Fuzzy ARTMAP using the validation set
+     * Compute the error rate of the Fuzzy ARTMAP using the validation set, stopping as soon as the
+     * error rate is certain to be above errorBound even if every remaining pattern is classified
+     * correctly. A truncated validation (see {@link #IsValidationTruncated()}) returns that lower
+     * bound of the error rate instead, and leaves node statistics computed from the patterns seen.
      * @param validationSet
+     * @param errorBound
      * @return
      */
-    public double Validate(Map<Double[], Integer> validationSet)
+    public double Validate(Dataset validationSet, double errorBound)
     {
+        Scratch scratch = SCRATCH.get();
+        CategorySearch search = scratch.search;
+        if (index != null)
+            index.Refresh();
+        double[] patterns = validationSet.GetPatterns();
+        int size = validationSet.Size();
         int correctCount = 0;
 
-        for (Node node : nodes)
-            node.Reset();
+        nodes.Reset();
+        validationTruncated = false;
 
         //Loop for input/output pairs
-        for (Map.Entry<Double[], Integer> input : validationSet.entrySet())
+        int seenCorrectCount = 0;
+        int remaining = 0;
+        for (int p = 0; p < size; p++)
         {
-            double vigilanceParam = baselineVigilenceParam;
-
-            //Compute activation for committed nodes
-            ArrayList<Node> sortedActivationList = GetActivation(input);
+            int label = validationSet.Label(p);
 
-            //Select node with highest activation and do vigilance tests
-            for (Node node : sortedActivationList)
+            //Select node with highest activation that passes the vigilance test
+            int node = Select(patterns, validationSet.Offset(p), validationSet.Dimensions(), search);
+            if (node >= 0)
             {
-                //Compute vigilance
-                double vigilance = FuzzyMath.sum(FuzzyMath.fuzzyMin(input.getKey(), node.GetPattern()))/FuzzyMath.sum(input.getKey());
+                //Node selected, increment frequency
+                nodes.IncrementFrequencyCount(node);
 
-                //Committed Node
-                if (nodes.contains(node))
+                //Selected node label matches input, increment accuracy
+                if (label == nodes.GetLabel(node))
                 {
-                    //Vigilance test
-                    if (vigilance >= vigilanceParam)
-                    {
-                        //Node selected, increment frequency
-                        node.IncrementFrequencyCount();
-
-                        //Selected node label matches input, increment accuracy
-                        if (input.getValue() == node.GetLabel())
-                            node.IncrementAccuracyCount();
-
-                        break;
-                    }
+                    nodes.IncrementAccuracyCount(node);
+                    seenCorrectCount++;
                 }
-                //Uncommitted Node, do nothing
+            }
 
-                //Disqualify node
-                node.SetActivation(-1.0);
+            //Lowest error rate still possible, computed as the final error rate is
+            remaining = size - p - 1;
+            if (remaining > 0 && 1 - (double)(seenCorrectCount + remaining)/(double)size > errorBound)
+            {
+                validationTruncated = true;
+                break;
             }
         }
 
-        //Find max accuracy and frequency for each label
-        Map<Integer, Integer> maxAccuracyMap = new LinkedHashMap<Integer, Integer>();
-        Map<Integer, Integer> maxFrequencyMap = new LinkedHashMap<Integer, Integer>();
-        for (Node node : nodes)
+        //Find max accuracy and frequency for each label, labels are few so their slots are looked
+        //up linearly
+        int nodeCount = nodes.Size();
+        scratch.EnsureLabelCapacity(nodeCount);
+        int[] slots = scratch.slots;
+        int[] maxAccuracyCounts = scratch.maxAccuracyCounts;
+        int[] maxFrequencyCounts = scratch.maxFrequencyCounts;
+        int labelCount = 0;
+        for (int i = 0; i < nodeCount; i++)
         {
-            Integer maxAccuracy = 0;
-            if (maxAccuracyMap.containsKey(node.GetLabel()))
-                maxAccuracy = maxAccuracyMap.get(node.GetLabel());
-            maxAccuracyMap.put(node.GetLabel(), Math.max(maxAccuracy, node.GetAccuracyCount()));
-
-            Integer maxFrequency = 0;
-            if (maxFrequencyMap.containsKey(node.GetLabel()))
-                maxFrequency = maxFrequencyMap.get(node.GetLabel());
-            maxFrequencyMap.put(node.GetLabel(), Math.max(maxFrequency, node.GetFrequencyCount()));
+            int slot = scratch.Slot(nodes.GetLabel(i), labelCount);
+            if (slot == labelCount)
+            {
+                maxAccuracyCounts[slot] = 0;
+                maxFrequencyCounts[slot] = 0;
+                labelCount++;
+            }
+            slots[i] = slot;
+            maxAccuracyCounts[slot] = Math.max(maxAccuracyCounts[slot], nodes.GetAccuracyCount(i));
+            maxFrequencyCounts[slot] = Math.max(maxFrequencyCounts[slot], nodes.GetFrequencyCount(i));
         }
 
         //Compute metrics
-        for (Node node : nodes)
+        for (int i = 0; i < nodeCount; i++)
         {
-            correctCount += node.GetAccuracyCount();
+            correctCount += nodes.GetAccuracyCount(i);
 
-            int maxAccuracyCount = maxAccuracyMap.get(node.GetLabel());
-            int maxFrequencyCount = maxFrequencyMap.get(node.GetLabel());
+            int maxAccuracyCount = maxAccuracyCounts[slots[i]];
+            int maxFrequencyCount = maxFrequencyCounts[slots[i]];
 
             //Correctness check
-            assert node.GetAccuracyCount() <= maxAccuracyCount;
-            assert node.GetFrequencyCount() <= maxFrequencyCount;
+            assert nodes.GetAccuracyCount(i) <= maxAccuracyCount;
+            assert nodes.GetFrequencyCount(i) <= maxFrequencyCount;
 
             if (maxAccuracyCount > 0)
-                node.SetAccuracy((double)node.GetAccuracyCount() / (double)maxAccuracyCount);
+                nodes.SetAccuracy(i, (double)nodes.GetAccuracyCount(i) / (double)maxAccuracyCount);
             if (maxFrequencyCount > 0)
-                node.SetFrequency((double)node.GetFrequencyCount() / (double)maxFrequencyCount);
+                nodes.SetFrequency(i, (double)nodes.GetFrequencyCount(i) / (double)maxFrequencyCount);
         }
 
         //Correctness check
-        assert correctCount <= validationSet.size();
+        assert correctCount <= validationSet.Size();
+
+        validationSamples = size - remaining;
+        return 1 - (double)(correctCount + remaining)/(double)size;
+    }
+
+    /**
+     * Enables or disables the spatial index over the category boxes. With the index, categories
+     * that certainly fail the baseline vigilance test are skipped without being scored, which
+     * gives the same results as scoring every category.
+     * @param indexed
+     */
+    public void SetIndexed(boolean indexed)
+    {
+        if (indexed && index == null)
+        {
+            index = new CategoryIndex(nodes);
+            nodes.SetIndex(index);
+        }
+        else if (!indexed && index != null)
+        {
+            nodes.SetIndex(null);
+            index = null;
+        }
+    }
+
+    public boolean IsIndexed()
+    {
+        return index != null;
+    }
+
+    /**
+     * Returns the categories that could pass the baseline vigilance test for a complement coded
+     * input, a superset of those that do. Without the index this is every category.
+     * @param input
+     * @return node indices in no particular order
+     */
+    public int[] GetVigilanceCandidates(double[] input)
+    {
+        int[] result = new int[nodes.Size()];
+        if (index == null)
+        {
+            for (int i = 0; i < result.length; i++)
+                result[i] = i;
+            return result;
+        }
+
+        index.Refresh();
+        int count = index.Candidates(input, 0, FuzzyMath.sum(input), baselineVigilenceParam, result);
+        return Arrays.copyOf(result, count);
+    }
 
-        return 1 - (double)correctCount/(double)validationSet.size();
+    /**
+     * Returns the categories whose boxes contain a complement coded input, those with w <= I in
+     * every dimension and so |I ^ w| = |w|
+     * @param input
+     * @return node indices in no particular order
+     */
+    public int[] GetContainingCategories(double[] input)
+    {
+        int[] result = new int[nodes.Size()];
+        int count = 0;
+        if (index != null)
+        {
+            index.Refresh();
+            count = index.Containing(input, 0, result);
+        }
+        else
+        {
+            for (int i = 0; i < nodes.Size(); i++)
+            {
+                boolean contains = true;
+                for (int d = 0; d < nodes.Dimensions() && contains; d++)
+                    contains = nodes.GetWeight(i, d) <= input[d];
+                if (contains)
+                    result[count++] = i;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns true if the last validation stopped early at its error bound
+     * @return
+     */
+    public boolean IsValidationTruncated()
+    {
+        return validationTruncated;
+    }
+
+    /**
+     * Returns the number of patterns presented by the last validation
+     * @return
+     */
+    public int GetValidationSamples()
+    {
+        return validationSamples;
     }
 
     /**
@@ -251,10 +577,23 @@ public class FuzzyARTMAP
      */
     public int Size()
     {
-        return nodes.size();
+        return nodes.Size();
     }
 
+    /**
+     * Returns views of the nodes in the category representation layer, valid until the nodes are
+     * added or removed
+     * @return
+     */
     public ArrayList<Node> GetNodes()
+    {
+        ArrayList<Node> result = new ArrayList<Node>(nodes.Size());
+        for (int i = 0; i < nodes.Size(); i++)
+            result.add(new Node(nodes, i));
+        return result;
+    }
+
+    public CategoryStore GetCategoryStore()
     {
         return nodes;
     }
@@ -268,4 +607,126 @@ public class FuzzyARTMAP
     {
         return choiceParam;
     }
+
+    public int GetMaxEpochs()
+    {
+        return maxEpochs;
+    }
+
+    /**
+     * Limits the number of epochs used when training on a data set, 0 trains until convergence
+     * @param maxEpochs
+     */
+    public void SetMaxEpochs(int maxEpochs)
+    {
+        this.maxEpochs = maxEpochs;
+    }
+
+    public double GetConvergenceTolerance()
+    {
+        return convergenceTolerance;
+    }
+
+    /**
+     * Sets the L1 weight change below which an update does not count as a change when testing for
+     * convergence, 0 counts every update
+     * @param convergenceTolerance
+     */
+    public void SetConvergenceTolerance(double convergenceTolerance)
+    {
+        this.convergenceTolerance = convergenceTolerance;
+    }
+
+    public double GetLearningRate()
+    {
+        return learningRate;
+    }
+
+    /**
+     * Sets the learning rate beta, the resonating category moves to beta*(I ^ w) + (1-beta)*w. 1 is
+     * fast learning. Lower rates learn slowly: weights only ever shrink, so training stops once the
+     * remaining steps round to nothing, but that can take many epochs, which a maximum number of
+     * epochs or a convergence tolerance bounds. New categories are always committed with fast
+     * learning.
+     * @param learningRate in (0, 1]
+     */
+    public void SetLearningRate(double learningRate)
+    {
+        assert learningRate > 0 && learningRate <= 1;
+        this.learningRate = learningRate;
+    }
+
+    public double GetMatchTrackingEpsilon()
+    {
+        return matchTrackingEpsilon;
+    }
+
+    /**
+     * Sets how far match tracking raises vigilance above the match of a category that fails the
+     * label test. 0 lets categories of equal match be tried next, a small positive value skips them.
+     * Vigilance never falls below the baseline.
+     * @param matchTrackingEpsilon
+     */
+    public void SetMatchTrackingEpsilon(double matchTrackingEpsilon)
+    {
+        this.matchTrackingEpsilon = matchTrackingEpsilon;
+    }
+
+    /**
+     * Returns the statistics of each epoch of the last training on a data set, in order
+     * @return
+     */
+    public List<TrainingEpoch> GetTrainingEpochs()
+    {
+        if (trainingEpochs == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(trainingEpochs);
+    }
+
+    /**
+     * Reusable buffers of one thread
+     */
+    private static class Scratch
+    {
+        private CategorySearch search = new CategorySearch();
+        private double[] pattern = new double[0];
+
+        //Label slot of each node, and the label and maximum counts of each slot
+        private int[] slots = new int[0];
+        private int[] slotLabels = new int[0];
+        private int[] maxAccuracyCounts = new int[0];
+        private int[] maxFrequencyCounts = new int[0];
+
+        private double[] Pattern(int dims)
+        {
+            if (pattern.length < dims)
+                pattern = new double[dims];
+            return pattern;
+        }
+
+        private void EnsureLabelCapacity(int capacity)
+        {
+            if (slots.length < capacity)
+            {
+                slots = new int[capacity];
+                slotLabels = new int[capacity];
+                maxAccuracyCounts = new int[capacity];
+                maxFrequencyCounts = new int[capacity];
+            }
+        }
+
+        /**
+         * Returns the slot of a label among the first count slots, or assigns the label to slot
+         * count if it has none
+         */
+        private int Slot(int label, int count)
+        {
+            for (int slot = 0; slot < count; slot++)
+                if (slotLabels[slot] == label)
+                    return slot;
+
+            slotLabels[count] = label;
+            return count;
+        }
+    }
 }
@@ -40,6 +40,147 @@ public class FuzzyMath
         return result;
     }
 
+    /**
+     * Compute the fuzzy min of a row of one flat array and a row of another
+     * @param a
+     * @param aOffset start of the row in a
+     * @param b
+     * @param bOffset start of the row in b
+     * @param length
+     * @return
+     */
+    public static double[] fuzzyMin(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        double[] result = new double[length];
+        fuzzyMin(a, aOffset, b, bOffset, length, result);
+
+        return result;
+    }
+
+    /**
+     * Compute the fuzzy min of a row of one flat array and a row of another into result[0, length)
+     * @param a
+     * @param aOffset start of the row in a
+     * @param b
+     * @param bOffset start of the row in b
+     * @param length
+     * @param result
+     */
+    public static void fuzzyMin(double[] a, int aOffset, double[] b, int bOffset, int length, double[] result)
+    {
+        for (int i = 0; i < length; i++)
+            result[i] = Math.min(a[aOffset + i], b[bOffset + i]);
+    }
+
+    /**
+     * Sums the element-wise minimum of a row of one flat array and a row of another, without
+     * allocating the intermediate fuzzy min
+     * @param a
+     * @param aOffset start of the row in a
+     * @param b
+     * @param bOffset start of the row in b
+     * @param length
+     * @return
+     */
+    public static double sumOfMin(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        double result = 0;
+
+        for (int i = 0; i < length; i++)
+            result += Math.min(a[aOffset + i], b[bOffset + i]);
+
+        return result;
+    }
+
+    /**
+     * Computes |a ^ w| for each row w in [fromRow, toRow) of a flat row-major weight array in a
+     * single pass. Four rows are accumulated together so that the additions of independent rows
+     * overlap, while each row is still summed in index order and gives the same result as
+     * {@link #sumOfMin(double[], int, double[], int, int)}
+     * @param a
+     * @param aOffset start of the input in a
+     * @param weights
+     * @param dims
+     * @param fromRow
+     * @param toRow
+     * @param result receives the sum for row j at result[j]
+     */
+    public static void sumOfMin(double[] a, int aOffset, double[] weights, int dims, int fromRow, int toRow, double[] result)
+    {
+        int row = fromRow;
+        for (; row + 4 <= toRow; row += 4)
+        {
+            int offset0 = row * dims;
+            int offset1 = offset0 + dims;
+            int offset2 = offset1 + dims;
+            int offset3 = offset2 + dims;
+            double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+
+            for (int i = 0; i < dims; i++)
+            {
+                double x = a[aOffset + i];
+                sum0 += Math.min(x, weights[offset0 + i]);
+                sum1 += Math.min(x, weights[offset1 + i]);
+                sum2 += Math.min(x, weights[offset2 + i]);
+                sum3 += Math.min(x, weights[offset3 + i]);
+            }
+
+            result[row] = sum0;
+            result[row + 1] = sum1;
+            result[row + 2] = sum2;
+            result[row + 3] = sum3;
+        }
+
+        for (; row < toRow; row++)
+            result[row] = sumOfMin(a, aOffset, weights, row * dims, dims);
+    }
+
+    /**
+     * Computes the L1 distance between a row of one flat array and a row of another
+     * @param a
+     * @param aOffset start of the row in a
+     * @param b
+     * @param bOffset start of the row in b
+     * @param length
+     * @return
+     */
+    public static double distance(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        double result = 0;
+
+        for (int i = 0; i < length; i++)
+            result += Math.abs(a[aOffset + i] - b[bOffset + i]);
+
+        return result;
+    }
+
+    /**
+     * Sums all of the elements of an array
+     * @param a
+     * @return
+     */
+    public static double sum(double[] a)
+    {
+        return sum(a, 0, a.length);
+    }
+
+    /**
+     * Sums a range of elements of an array
+     * @param a
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static double sum(double[] a, int offset, int length)
+    {
+        double result = 0;
+
+        for (int i = offset; i < offset + length; i++)
+            result += a[i];
+
+        return result;
+    }
+
     /**
      * Gets the complement of each element in the array
      * @param a
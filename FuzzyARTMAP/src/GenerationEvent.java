@@ -0,0 +1,70 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for one MOGFAM generation, see {@link GenerationMetrics}. The duration of
+ * the event is the wall time of the generation. The event is recorded when a recording enables
+ * MOGFAM.Generation, as the default settings do, for example with
+ *   java -XX:StartFlightRecording=filename=mogfam.jfr MOGFAM
+ */
+@Name("MOGFAM.Generation")
+@Label("Generation")
+@Category("MOGFAM")
+@Description("Time spent in each phase of a generation and the state of the population")
+@StackTrace(false)
+public class GenerationEvent extends Event
+{
+    @Label("Run")
+    int run;
+
+    @Label("Island")
+    int island;
+
+    @Label("Generation")
+    int generation;
+
+    @Label("Evaluation")
+    @Timespan(Timespan.NANOSECONDS)
+    long evaluation;
+
+    @Label("Archive Update")
+    @Timespan(Timespan.NANOSECONDS)
+    long archiveUpdate;
+
+    @Label("Fitness Assignment")
+    @Timespan(Timespan.NANOSECONDS)
+    long fitnessAssignment;
+
+    @Label("Selection")
+    @Timespan(Timespan.NANOSECONDS)
+    long selection;
+
+    @Label("Pruning")
+    @Timespan(Timespan.NANOSECONDS)
+    long pruning;
+
+    @Label("Mutation")
+    @Timespan(Timespan.NANOSECONDS)
+    long mutation;
+
+    @Label("Crossover")
+    @Timespan(Timespan.NANOSECONDS)
+    long crossover;
+
+    @Label("Archive Size")
+    int archiveSize;
+
+    @Label("Mean Category Count")
+    double meanCategories;
+
+    @Label("Validation Samples")
+    long validationSamples;
+
+    @Label("Validation Samples per Second")
+    double samplesPerSecond;
+}
@@ -0,0 +1,247 @@
+import jdk.jfr.EventType;
+
+/**
+ * Metrics of one MOGFAM generation: the wall time spent evaluating the population, updating the
+ * archive, assigning fitness, and in selection, pruning, mutation and crossover, and the archive
+ * size, mean category count and validation throughput. They are recorded as a
+ * {@link GenerationEvent} when a flight recording enables it, and written to a
+ * {@link MetricsSink} when one is given.
+ *
+ * Metrics are only created when they are recorded somewhere, see {@link #Create}, so a
+ * generation that is not measured only pays for a null check at each phase.
+ */
+public class GenerationMetrics
+{
+    private static EventType EVENT_TYPE = EventType.getEventType(GenerationEvent.class);
+
+    private int run;
+    private int island;
+    private int generation;
+
+    private long start;
+    private long last;
+    private long totalNanos;
+    private long evaluationNanos;
+    private long archiveUpdateNanos;
+    private long fitnessNanos;
+    private long selectionNanos;
+    private long pruningNanos;
+    private long mutationNanos;
+    private long crossoverNanos;
+
+    private int archiveSize;
+    private double meanCategories;
+    private long validationSamples;
+
+    private MetricsSink sink;
+    private GenerationEvent event;
+
+    private GenerationMetrics(int run, int island, int generation, MetricsSink sink, boolean recordEvent)
+    {
+        this.run = run;
+        this.island = island;
+        this.generation = generation;
+        this.sink = sink;
+        if (recordEvent)
+        {
+            event = new GenerationEvent();
+            event.begin();
+        }
+        start = last = System.nanoTime();
+    }
+
+    /**
+     * Starts measuring a generation
+     * @param run
+     * @param island
+     * @param generation
+     * @param sink sink the metrics are written to, or null
+     * @return the metrics, or null if they are neither written to a sink nor recorded as an event
+     */
+    public static GenerationMetrics Create(int run, int island, int generation, MetricsSink sink)
+    {
+        boolean recordEvent = EVENT_TYPE.isEnabled();
+        if (sink == null && !recordEvent)
+            return null;
+
+        return new GenerationMetrics(run, island, generation, sink, recordEvent);
+    }
+
+    //Time since the previous phase ended
+    private long Lap()
+    {
+        long now = System.nanoTime();
+        long lap = now - last;
+        last = now;
+        return lap;
+    }
+
+    /**
+     * Ends the evaluation of the population
+     * @param samples number of validation patterns presented
+     * @param population
+     */
+    public void EndEvaluation(long samples, Iterable<Chromosome> population)
+    {
+        evaluationNanos += Lap();
+        validationSamples += samples;
+
+        int count = 0;
+        long categories = 0;
+        for (Chromosome chromo : population)
+        {
+            categories += chromo.GetFuzzyARTMAP().Size();
+            count++;
+        }
+        meanCategories = count > 0 ? (double)categories / count : 0;
+    }
+
+    public void EndArchiveUpdate(int archiveSize)
+    {
+        archiveUpdateNanos += Lap();
+        this.archiveSize = archiveSize;
+    }
+
+    public void EndFitness()
+    {
+        fitnessNanos += Lap();
+    }
+
+    public void EndSelection()
+    {
+        selectionNanos += Lap();
+    }
+
+    public void EndPruning()
+    {
+        pruningNanos += Lap();
+    }
+
+    public void EndMutation()
+    {
+        mutationNanos += Lap();
+    }
+
+    public void EndCrossover()
+    {
+        crossoverNanos += Lap();
+    }
+
+    /**
+     * Ends the generation and records the metrics
+     */
+    public void Record()
+    {
+        totalNanos = System.nanoTime() - start;
+
+        if (event != null)
+        {
+            event.end();
+            event.run = run;
+            event.island = island;
+            event.generation = generation;
+            event.evaluation = evaluationNanos;
+            event.archiveUpdate = archiveUpdateNanos;
+            event.fitnessAssignment = fitnessNanos;
+            event.selection = selectionNanos;
+            event.pruning = pruningNanos;
+            event.mutation = mutationNanos;
+            event.crossover = crossoverNanos;
+            event.archiveSize = archiveSize;
+            event.meanCategories = meanCategories;
+            event.validationSamples = validationSamples;
+            event.samplesPerSecond = GetSamplesPerSecond();
+            event.commit();
+        }
+
+        if (sink != null)
+            sink.Write(this);
+    }
+
+    public int GetRun()
+    {
+        return run;
+    }
+
+    public int GetIsland()
+    {
+        return island;
+    }
+
+    public int GetGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Returns the wall time of the generation
+     * @return
+     */
+    public long GetTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    public long GetEvaluationNanos()
+    {
+        return evaluationNanos;
+    }
+
+    public long GetArchiveUpdateNanos()
+    {
+        return archiveUpdateNanos;
+    }
+
+    public long GetFitnessNanos()
+    {
+        return fitnessNanos;
+    }
+
+    public long GetSelectionNanos()
+    {
+        return selectionNanos;
+    }
+
+    public long GetPruningNanos()
+    {
+        return pruningNanos;
+    }
+
+    public long GetMutationNanos()
+    {
+        return mutationNanos;
+    }
+
+    public long GetCrossoverNanos()
+    {
+        return crossoverNanos;
+    }
+
+    public int GetArchiveSize()
+    {
+        return archiveSize;
+    }
+
+    /**
+     * Returns the mean number of categories of the evaluated population
+     * @return
+     */
+    public double GetMeanCategories()
+    {
+        return meanCategories;
+    }
+
+    public long GetValidationSamples()
+    {
+        return validationSamples;
+    }
+
+    /**
+     * Returns the validation patterns presented per second of evaluation
+     * @return
+     */
+    public double GetSamplesPerSecond()
+    {
+        return evaluationNanos > 0 ? validationSamples * 1e9 / evaluationNanos : 0;
+    }
+}
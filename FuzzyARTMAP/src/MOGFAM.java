@@ -1,6 +1,18 @@
 import javax.xml.crypto.Data;
 import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * Created by vic on 3/26/14.
@@ -15,181 +27,940 @@ public class MOGFAM
 
     private static int TOTAL_RUNS = 5;
 
+    //Runs executed concurrently, 0 uses all available processors
+    private static int RUN_THREADS = 0;
+
+    //Threads used to train and evaluate chromosomes, 0 uses all available processors
+    private static int EVALUATION_THREADS = 0;
+    private static ForkJoinPool EVALUATION_POOL = new ForkJoinPool(EVALUATION_THREADS > 0 ? EVALUATION_THREADS : Runtime.getRuntime().availableProcessors());
+
+    //Validated networks remembered per run, 0 disables the cache
+    private static int FITNESS_CACHE_SIZE = 1024;
+    private static boolean PRINT_FITNESS_CACHE_STATISTICS = false;
+
+    //Stop validating offspring once they are certain to be dominated by a simpler member of A. Their error
+    //rate is then only a lower bound, which changes their fitness and so the course of the search.
+    private static boolean RACING_VALIDATION = false;
+
+    //Index the category boxes of each network, worthwhile for networks with thousands of categories
+    private static boolean INDEX_CATEGORIES = false;
+
+    //Training of the initial networks: maximum epochs (0 trains until an epoch makes no updates),
+    //learning rate (1 is fast learning) and match tracking epsilon. Training statistics are printed
+    //per epoch, summed over each initial population.
+    private static int TRAINING_MAX_EPOCHS = 0;
+    private static double LEARNING_RATE = 1.0;
+    private static double MATCH_TRACKING_EPSILON = 0.0;
+    private static boolean PRINT_TRAINING_STATISTICS = false;
+
+    //Island model: populations evolved concurrently, each of POPULATION_SIZE, that exchange MIGRANTS
+    //members of their archives every MIGRATION_INTERVAL generations. 1 evolves a single population.
+    private static int ISLANDS = 1;
+    private static int MIGRATION_INTERVAL = 5;
+    private static int MIGRANTS = 2;
+    private static MigrationTopology MIGRATION_TOPOLOGY = MigrationTopology.Ring;
+
+    public enum MigrationTopology
+    {
+        Ring, FullyConnected
+    }
+
+    //Generations between checkpoints of each run, 0 disables checkpoints. With islands, checkpoints
+    //are taken at migrations, every multiple of MIGRATION_INTERVAL at or above this interval.
+    //Interrupted runs are continued with --resume <directory>.
+    private static int CHECKPOINT_INTERVAL = 10;
+    private static String CHECKPOINT_DIRECTORY = "checkpoints";
+
+    //Directory the final archive of each run is written to as a model file (see ModelFile), null
+    //to not write models
+    private static String MODEL_DIRECTORY = "models";
+
+    //File per generation metrics are written to, CSV or JSON lines if it ends in .jsonl, null to
+    //not write metrics. The same metrics are recorded as MOGFAM.Generation flight recorder events.
+    private static String METRICS_FILE = null;
+    private static MetricsSink metricsSink;
+
     private static String DATA = "data/g4c_25";
     //private static String DATA = "data/g6c_15";
     //private static String DATA = "data/Iris5000";
 
     public static void main(String[ ] args)
     {
+        //Resume the runs checkpointed in a directory, with the seeds they were started with
+        boolean resume = false;
+        Path checkpointDirectory = Paths.get(CHECKPOINT_DIRECTORY);
+        for (int i = 0; i < args.length - 1; i++)
+        {
+            if (args[i].equals("--resume"))
+            {
+                resume = true;
+                checkpointDirectory = Paths.get(args[i + 1]);
+            }
+        }
+        Path argumentsFile = checkpointDirectory.resolve("arguments");
+        if (resume)
+            args = ReadArguments(argumentsFile);
+
+        //Master seed, every run seed is derived from it
+        long seed = new Random().nextLong();
+        Long runSeed = null;
+        for (int i = 0; i < args.length - 1; i++)
+        {
+            if (args[i].equals("--seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("--run-seed"))
+                runSeed = Long.parseLong(args[i + 1]);
+        }
+
+        boolean checkpointing = CHECKPOINT_INTERVAL > 0 || resume;
+        if (checkpointing && !resume)
+            WriteArguments(argumentsFile, "--seed " + seed + (runSeed != null ? " --run-seed " + runSeed : ""));
+
+        if (METRICS_FILE != null)
+        {
+            try
+            {
+                metricsSink = new MetricsSink(Paths.get(METRICS_FILE), resume);
+            } catch (IOException e)
+            {
+                System.out.println("IOException occurred while opening " + METRICS_FILE + ".");
+                System.exit(1);
+            }
+        }
+
         //Training data
         DataReader trainingDataReader = new DataReader(DATA, DataReader.Type.TRAINING);
-        Map<Double[], Integer> trainingSet = trainingDataReader.GetInputMap();
+        final Dataset trainingSet = trainingDataReader.GetDataset();
 
         //Validation data
         DataReader validationDataReader = new DataReader(DATA, DataReader.Type.VALIDATION);
-        Map<Double[], Integer> validationSet = validationDataReader.GetInputMap();
+        final Dataset validationSet = validationDataReader.GetDataset();
+
+        //Testing data
+        DataReader testingDataReader = new DataReader(DATA, DataReader.Type.TESTING);
+        final Dataset testingSet = testingDataReader.GetDataset();
 
         Map<Integer, ArrayList<Chromosome>> resultsMap = new LinkedHashMap<Integer, ArrayList<Chromosome>>();
 
-        for (int run = 0; run < TOTAL_RUNS; run++)
+        //Replay a single run from its recorded seed, or run all runs with seeds derived from the master seed
+        int totalRuns = runSeed != null ? 1 : TOTAL_RUNS;
+        if (runSeed == null)
+            System.out.println("Seed: " + seed);
+
+        //Schedule independent runs
+        ExecutorService runPool = Executors.newFixedThreadPool(RUN_THREADS > 0 ? RUN_THREADS : Runtime.getRuntime().availableProcessors());
+        List<Future<ArrayList<Chromosome>>> runs = new ArrayList<Future<ArrayList<Chromosome>>>();
+        final List<ByteArrayOutputStream> outputs = new ArrayList<ByteArrayOutputStream>();
+        final List<Path> checkpointFiles = new ArrayList<Path>();
+        for (int run = 0; run < totalRuns; run++)
+        {
+            final int currentRun = run;
+            final long currentSeed = runSeed != null ? runSeed : GetRunSeed(seed, run);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final Path checkpointFile = checkpointing ? checkpointDirectory.resolve("run-" + run + ".ckpt") : null;
+            final boolean resumeRun = resume;
+            outputs.add(output);
+            checkpointFiles.add(checkpointFile);
+            runs.add(runPool.submit(new Callable<ArrayList<Chromosome>>() {
+                @Override
+                public ArrayList<Chromosome> call() {
+                    return Run(currentRun, currentSeed, trainingSet, validationSet, testingSet, output, checkpointFile, resumeRun);
+                }
+            }));
+        }
+
+        //Print output and merge archives in run order. The pool threads are not daemons, so the pool
+        //is stopped even when a run fails, otherwise the JVM would not exit.
+        try
+        {
+            for (int run = 0; run < totalRuns; run++)
+            {
+                try
+                {
+                    resultsMap.put(run, runs.get(run).get());
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e)
+                {
+                    throw new RuntimeException(e.getCause());
+                }
+                System.out.print(outputs.get(run).toString());
+            }
+        } finally
+        {
+            runPool.shutdownNow();
+        }
+        if (metricsSink != null)
+            metricsSink.Close();
+
+        //All runs finished, so their checkpoints are no longer needed
+        if (checkpointing)
+        {
+            Checkpoint.Flush();
+            try
+            {
+                for (Path checkpointFile : checkpointFiles)
+                {
+                    Files.deleteIfExists(checkpointFile);
+                    Files.deleteIfExists(checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp"));
+                }
+                Files.deleteIfExists(argumentsFile);
+            } catch (IOException e)
+            {
+                System.out.println("IOException occurred while deleting checkpoints in " + checkpointDirectory + ".");
+            }
+        }
+
+        //Results for all runs
+        System.out.println("---- Results for " + totalRuns + " Runs ----");
+        System.out.println(String.format(" %5s%6s%6s%6s%6s", "size", "max", "min", "avg", "count"));
+        for (int complexity = 1; complexity < 10; complexity++)
+        {
+            double min = Double.MAX_VALUE, max = 0, avg = 0;
+            int count = 0;
+            for (Map.Entry<Integer, ArrayList<Chromosome>> entry : resultsMap.entrySet())
+            {
+                Chromosome chromo = null;
+                //Find chromosome with corresponding complexity
+                for (Chromosome c : entry.getValue())
+                    if (c.GetComplexity() == complexity)
+                        chromo = c;
+                if (chromo != null)
+                {
+                    max = Math.max(max, chromo.GetErrorRate());
+                    min = Math.min(min, chromo.GetErrorRate());
+                    avg += chromo.GetErrorRate();
+                    count++;
+                }
+            }
+            if (count > 0)
+                System.out.println(String.format(" %5d %1.3f %1.3f %1.3f%6d", complexity, max, min, avg/(double)count, count));
+        }
+    }
+
+    private static String[] ReadArguments(Path argumentsFile)
+    {
+        try
+        {
+            return new String(Files.readAllBytes(argumentsFile), StandardCharsets.UTF_8).trim().split("\\s+");
+        } catch (IOException e)
+        {
+            System.out.println("IOException occurred while reading " + argumentsFile + ", nothing to resume.");
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void WriteArguments(Path argumentsFile, String arguments)
+    {
+        try
+        {
+            Files.createDirectories(argumentsFile.toAbsolutePath().getParent());
+            Files.write(argumentsFile, arguments.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e)
+        {
+            System.out.println("IOException occurred while writing " + argumentsFile + ".");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Performs a single independent run. The run depends only on its seed, so it can be replayed
+     * exactly with --run-seed.
+     * @param run
+     * @param seed
+     * @param trainingSet
+     * @param validationSet
+     * @param testingSet
+     * @param output receives the output of the run
+     * @param checkpointFile file the run is checkpointed to, or null
+     * @param resume continue from the checkpoint, if there is one
+     * @return the archive of nondominated solutions, evaluated on the testing set
+     */
+    private static ArrayList<Chromosome> Run(int run, long seed, Dataset trainingSet, Dataset validationSet,
+                                             Dataset testingSet, ByteArrayOutputStream output, Path checkpointFile,
+                                             boolean resume)
+    {
+        PrintStream out = new PrintStream(output, true);
+
+        //A resumed run starts with the output it had printed, and a finished run is not repeated
+        Checkpoint checkpoint = resume ? Checkpoint.Load(checkpointFile) : null;
+        if (checkpoint != null)
+        {
+            if (checkpoint.GetSeed() != seed || (!checkpoint.IsComplete() && checkpoint.GetIslandStates().length != Math.max(ISLANDS, 1)))
+            {
+                System.out.println("Checkpoint " + checkpointFile + " was not written by this run or configuration.");
+                System.exit(1);
+            }
+
+            out.write(checkpoint.GetOutput(), 0, checkpoint.GetOutput().length);
+            if (checkpoint.IsComplete())
+                return checkpoint.GetArchive();
+        }
+        else
+        {
+            out.println("---- Run: " + run + " - Seed: " + seed + " ----");
+        }
+
+        Random random = new Random(seed);
+        RunCheckpoints checkpoints = checkpointFile != null && CHECKPOINT_INTERVAL > 0
+                ? new RunCheckpoints(run, seed, output, checkpointFile) : null;
+
+        ArrayList<Chromosome> archive;
+        if (ISLANDS <= 1)
+        {
+            //Single population using the run generator
+            Island island = new Island(run, 0, random, validationSet, out, checkpoints);
+            if (checkpoint != null)
+                island.Restore(checkpoint.GetIslandStates()[0]);
+            else
+            {
+                island.P.addAll(CreatePopulation(trainingSet, random));
+                if (PRINT_TRAINING_STATISTICS)
+                    PrintTrainingStatistics(island.P, "", out);
+            }
+            island.Evolve();
+            archive = island.A.GetMembers();
+        }
+        else
         {
-            Random random = new Random(); //new Random(SEED);
+            archive = RunIslands(run, random, trainingSet, validationSet, out, checkpoints, checkpoint);
+        }
+
+        out.println("---- Run: " + run + " - Results for Validation Set ----");
+        PrintResults(archive, out);
+        out.println();
 
-            ArrayList<Chromosome> P = new ArrayList<Chromosome>();
-            ArrayList<Chromosome> A = new ArrayList<Chromosome>();
+        //Compute objective values for each chromosome
+        ComputeObjectiveValues(archive, testingSet, null, null);
 
-            //Generate initial population
-            for (int i = 0; i < POPULATION_SIZE; i++)
-                P.add(new Chromosome(trainingSet, random, CHOICE_PARAM));
+        out.println("---- Run: " + run + " - Results for Testing Set ----");
+        PrintResults(archive, out);
+        out.println();
 
-            int lastUpdateGeneration = 0; //Last generation A was updated
+        if (MODEL_DIRECTORY != null)
+            WriteModels(Paths.get(MODEL_DIRECTORY, "run-" + run + ".fam"), archive, out);
+
+        if (checkpointFile != null)
+            new Checkpoint(run, seed, output.toByteArray(), archive).Save(checkpointFile);
+
+        return archive;
+    }
 
-            //Loop for generations
-            for (int generation = 0; generation < TOTAL_GENERATIONS; generation++)
+    /**
+     * Writes the networks of an archive to a model file, in increasing order of complexity
+     * @param modelFile
+     * @param archive
+     * @param out
+     */
+    private static void WriteModels(Path modelFile, ArrayList<Chromosome> archive, PrintStream out)
+    {
+        ArrayList<Chromosome> front = new ArrayList<Chromosome>(archive);
+        Collections.sort(front, new Comparator<Chromosome>() {
+            @Override
+            public int compare(Chromosome a, Chromosome b) {
+                return Integer.compare(a.GetComplexity(), b.GetComplexity());
+            }
+        });
+
+        List<FuzzyARTMAP> models = new ArrayList<FuzzyARTMAP>();
+        for (Chromosome chromo : front)
+            models.add(chromo.GetFuzzyARTMAP());
+
+        try
+        {
+            Files.createDirectories(modelFile.toAbsolutePath().getParent());
+            ModelFile.Write(modelFile, models);
+        } catch (IOException e)
+        {
+            out.println("IOException occurred while writing " + modelFile + ", continuing without models.");
+        }
+    }
+
+    /**
+     * Evolves ISLANDS populations concurrently, each on its own thread with its own generator, and
+     * merges their archives into a single Pareto front. Migrants are exchanged over bounded queues,
+     * one batch per link every MIGRATION_INTERVAL generations, so the islands only wait on their
+     * neighbours and the run stays reproducible from its seed.
+     * @param run
+     * @param random
+     * @param trainingSet
+     * @param validationSet
+     * @param out
+     * @param checkpoints collects the island states for checkpoints, or null
+     * @param checkpoint checkpoint the islands are restored from, or null
+     * @return the merged archive
+     */
+    private static ArrayList<Chromosome> RunIslands(int run, Random random, Dataset trainingSet, Dataset validationSet, PrintStream out,
+                                                    RunCheckpoints checkpoints, Checkpoint checkpoint)
+    {
+        //Islands and their initial populations, seeded in order from the run generator
+        final ArrayList<Island> islands = new ArrayList<Island>();
+        for (int i = 0; i < ISLANDS; i++)
+            islands.add(new Island(run, i, new Random(random.nextLong()), validationSet, out, checkpoints));
+        if (checkpoint == null)
+        {
+            for (Island island : islands)
             {
-                //Compute objective values for each chromosome
-                for (Chromosome individual : P)
-                    individual.ComputeObjectiveValues(validationSet);
+                island.P.addAll(CreatePopulation(trainingSet, island.random));
+                if (PRINT_TRAINING_STATISTICS)
+                    PrintTrainingStatistics(island.P, " Island=" + island.id, out);
+            }
+        }
 
-                //Update A with solutions in P that are nondominated by solutions in A
-                for (int i = P.size()-1; i >= 0; i--)
+        //Links of the migration topology
+        for (Island island : islands)
+        {
+            for (Island target : islands)
+            {
+                boolean linked = MIGRATION_TOPOLOGY == MigrationTopology.FullyConnected
+                        ? target != island
+                        : target.id == (island.id + 1) % ISLANDS;
+                if (linked)
                 {
-                    Chromosome chromoP = P.get(i);
-                    ArrayList<Chromosome> dominated = new ArrayList<Chromosome>();
+                    BlockingQueue<Migration> link = new ArrayBlockingQueue<Migration>(2);
+                    island.targets.add(target);
+                    island.outgoing.add(link);
+                    target.sources.add(island);
+                    target.incoming.add(link);
+                }
+            }
+        }
+
+        //Restored after the links, since islands record which of their sources have stopped
+        if (checkpoint != null)
+        {
+            for (Island island : islands)
+            {
+                island.Restore(checkpoint.GetIslandStates()[island.id]);
+
+                //Islands that had stopped are part of every later checkpoint
+                if (island.finished && checkpoints != null)
+                    checkpoints.Report(island.id, island.generation, checkpoint.GetIslandStates()[island.id], true);
+            }
+        }
+
+        ExecutorService islandPool = Executors.newFixedThreadPool(ISLANDS);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final Island island : islands)
+        {
+            if (island.finished)
+                continue;
 
-                    boolean isChromoPNondominated = true;
-                    boolean hasSimilarChromoInA = false;
-                    for (Chromosome chromoA : A)
+            futures.add(islandPool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    island.Evolve();
+                    return null;
+                }
+            }));
+        }
+        try
+        {
+            for (Future<Void> future : futures)
+                future.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        } finally
+        {
+            islandPool.shutdownNow();
+        }
+
+        //Merge the island archives into a global front
+        ParetoArchive front = new ParetoArchive();
+        for (Island island : islands)
+            for (Chromosome chromo : island.A.GetMembers())
+                front.Add(chromo);
+
+        return front.GetMembers();
+    }
+
+    /**
+     * Nondominated individuals sent from one island to another
+     */
+    private static class Migration
+    {
+        private ArrayList<Chromosome> migrants;
+
+        //The sender stops after this migration
+        private boolean last;
+
+        private Migration(ArrayList<Chromosome> migrants, boolean last)
+        {
+            this.migrants = migrants;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Collects the states of the islands of a run and saves a checkpoint once every island has
+     * reached the same checkpoint generation, or has stopped before it. At that point every
+     * migration sent before the checkpoint has been received, so the migration queues need not be
+     * saved. With islands, the output saved with a checkpoint may include statistics that are
+     * printed again when the run is resumed.
+     */
+    private static class RunCheckpoints
+    {
+        private int run;
+        private long seed;
+        private ByteArrayOutputStream output;
+        private Path checkpointFile;
+        private int interval;
+
+        //States of the islands at each checkpoint generation, and of the islands that stopped
+        private TreeMap<Integer, byte[][]> pending = new TreeMap<Integer, byte[][]>();
+        private byte[][] finalStates = new byte[Math.max(ISLANDS, 1)][];
+        private int[] finalGenerations = new int[Math.max(ISLANDS, 1)];
+
+        private RunCheckpoints(int run, long seed, ByteArrayOutputStream output, Path checkpointFile)
+        {
+            this.run = run;
+            this.seed = seed;
+            this.output = output;
+            this.checkpointFile = checkpointFile;
+            interval = ISLANDS > 1
+                    ? (CHECKPOINT_INTERVAL + MIGRATION_INTERVAL - 1) / MIGRATION_INTERVAL * MIGRATION_INTERVAL
+                    : CHECKPOINT_INTERVAL;
+        }
+
+        /**
+         * Returns true if a checkpoint is taken after the given generation
+         * @param generation
+         * @return
+         */
+        private boolean IsDue(int generation)
+        {
+            return (generation + 1) % interval == 0 && generation < TOTAL_GENERATIONS - 1;
+        }
+
+        /**
+         * Records the state of an island
+         * @param island
+         * @param generations number of generations the island has completed
+         * @param state
+         * @param finished true if the island has stopped
+         */
+        private synchronized void Report(int island, int generations, byte[] state, boolean finished)
+        {
+            if (finished)
+            {
+                finalStates[island] = state;
+                finalGenerations[island] = generations;
+            }
+            else
+            {
+                if (!pending.containsKey(generations))
+                    pending.put(generations, new byte[finalStates.length][]);
+                pending.get(generations)[island] = state;
+            }
+
+            //Save the checkpoints all islands have reached, in order
+            while (!pending.isEmpty())
+            {
+                int generation = pending.firstKey();
+                byte[][] states = pending.get(generation);
+                for (int i = 0; i < states.length; i++)
+                {
+                    if (states[i] == null && finalStates[i] != null && finalGenerations[i] <= generation)
+                        states[i] = finalStates[i];
+                    if (states[i] == null)
+                        return;
+                }
+
+                pending.remove(generation);
+                new Checkpoint(run, seed, output.toByteArray(), states).Save(checkpointFile);
+            }
+        }
+    }
+
+    /**
+     * A population P with its archive A and generator, evolved one generation at a time
+     */
+    private static class Island
+    {
+        private int run;
+        private int id;
+        private Random random;
+        private Dataset validationSet;
+        private PrintStream out;
+        private RunCheckpoints checkpoints;
+
+        private ArrayList<Chromosome> P = new ArrayList<Chromosome>();
+        private ParetoArchive A = new ParetoArchive();
+        private int generation = 0; //Next generation to evolve
+        private int lastUpdateGeneration = 0; //Last generation A was updated
+
+        //Validation results of networks seen on this island
+        private FitnessCache fitnessCache = FITNESS_CACHE_SIZE > 0 ? new FitnessCache(FITNESS_CACHE_SIZE) : null;
+
+        //Migration links, the outgoing queue to each target and the incoming queue from each source
+        private ArrayList<Island> targets = new ArrayList<Island>();
+        private ArrayList<BlockingQueue<Migration>> outgoing = new ArrayList<BlockingQueue<Migration>>();
+        private ArrayList<Island> sources = new ArrayList<Island>();
+        private ArrayList<BlockingQueue<Migration>> incoming = new ArrayList<BlockingQueue<Migration>>();
+        private volatile boolean finished = false;
+
+        private Island(int run, int id, Random random, Dataset validationSet, PrintStream out, RunCheckpoints checkpoints)
+        {
+            this.run = run;
+            this.id = id;
+            this.random = random;
+            this.validationSet = validationSet;
+            this.out = out;
+            this.checkpoints = checkpoints;
+        }
+
+        /**
+         * Evolves until TOTAL_GENERATIONS or until A is not updated for 10 consecutive generations.
+         * Islands that migrate only stop at a migration, so their neighbours know when to stop
+         * waiting for them. Continues from the generation a restored island had reached.
+         */
+        private void Evolve()
+        {
+            try
+            {
+                for (; generation < TOTAL_GENERATIONS; generation++)
+                {
+                    Generation(generation);
+
+                    boolean stagnated = generation - lastUpdateGeneration > 10;
+                    if (targets.isEmpty() && sources.isEmpty())
                     {
-                        //Determine if P is nondominated by solutions in A
-                        if (chromoA.Dominates(chromoP))
-                        {
-                            isChromoPNondominated = false;
+                        //Break if A is not updated for 10 consecutive generations
+                        if (stagnated)
                             break;
-                        }
-                        //Find solutions in A dominated by P
-                        if (chromoP.Dominates(chromoA))
-                            dominated.add(chromoA);
-                        //Determine if similar chromosome is already in A
-                        if (chromoA.GetErrorRate() == chromoP.GetErrorRate()
-                                && chromoA.GetComplexity() == chromoP.GetComplexity())
-                            hasSimilarChromoInA = true;
                     }
-
-                    //P is nondominated by solutions in A
-                    if (isChromoPNondominated && !hasSimilarChromoInA)
+                    else if ((generation + 1) % MIGRATION_INTERVAL == 0 && generation < TOTAL_GENERATIONS - 1)
                     {
-                        //Remove dominated solutions from A
-                        A.removeAll(dominated);
-                        //Add chromo P to A
-                        if (!A.contains(chromoP))
-                            A.add(chromoP);
-
-                        lastUpdateGeneration = generation;
+                        Migrate(stagnated);
+                        if (stagnated)
+                            break;
                     }
+
+                    if (checkpoints != null && checkpoints.IsDue(generation))
+                        checkpoints.Report(id, generation + 1, Save(generation + 1, false), false);
                 }
-                //Remove duplicates from P (already in A)
-                P.removeAll(A);
 
-                ArrayList<Chromosome> newP = new ArrayList<Chromosome>();
-                ArrayList<Chromosome> PA = new ArrayList<Chromosome>();
-                PA.addAll(P);
-                PA.addAll(A);
+                //Checkpoints taken after this island stopped include its final state
+                if (checkpoints != null && !(targets.isEmpty() && sources.isEmpty()))
+                {
+                    int generations = Math.min(generation + 1, TOTAL_GENERATIONS);
+                    checkpoints.Report(id, generations, Save(generations, true), true);
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally
+            {
+                finished = true;
+            }
+        }
+
+        private void Generation(int generation)
+        {
+            GenerationMetrics metrics = GenerationMetrics.Create(run, id, generation, metricsSink);
 
-                //Compute the strength value for each chromosome
-                for (Chromosome chromo : PA)
-                    chromo.ComputeStrengthValue(PA);
+            //Compute objective values for each chromosome
+            long hits = fitnessCache != null ? fitnessCache.GetHits() : 0;
+            long misses = fitnessCache != null ? fitnessCache.GetMisses() : 0;
+            long samples = ComputeObjectiveValues(P, validationSet, fitnessCache, RACING_VALIDATION ? A : null);
+            if (metrics != null)
+                metrics.EndEvaluation(samples, P);
+            if (fitnessCache != null && PRINT_FITNESS_CACHE_STATISTICS)
+                out.println((ISLANDS > 1 ? " Island=" + id : "") + " Generation=" + generation
+                        + " FitnessCacheHits=" + (fitnessCache.GetHits() - hits)
+                        + " FitnessCacheMisses=" + (fitnessCache.GetMisses() - misses));
 
-                //Compute the fitness for each chromosome
-                for (Chromosome chromo : PA)
-                    chromo.ComputeFitness(PA);
+            //Update A with solutions in P that are nondominated by solutions in A, removing the
+            //solutions in A they dominate
+            for (int i = P.size()-1; i >= 0; i--)
+                if (A.Add(P.get(i)))
+                    lastUpdateGeneration = generation;
 
-                //Select parents and apply genetic operators
-                for (int individual = 0; individual < POPULATION_SIZE; individual++)
-                {
-                    Chromosome parentA = new Chromosome(GetChromosome(PA, random));
-                    Chromosome parentB = new Chromosome(GetChromosome(PA, random));
+            //Remove duplicates from P (already in A)
+            ArrayList<Chromosome> remaining = new ArrayList<Chromosome>(P.size());
+            for (Chromosome chromo : P)
+                if (!A.Contains(chromo))
+                    remaining.add(chromo);
+            P = remaining;
+            if (metrics != null)
+                metrics.EndArchiveUpdate(A.Size());
 
-                    //Prune categories
-                    parentA.DoPrune(random);
-                    parentB.DoPrune(random);
+            ArrayList<Chromosome> newP = new ArrayList<Chromosome>();
+            ArrayList<Chromosome> PA = new ArrayList<Chromosome>();
+            PA.addAll(P);
+            PA.addAll(A.GetMembers());
 
-                    //Mutation
-                    parentA.DoMutation(random, MUTATION_PARAM);
-                    parentB.DoMutation(random, MUTATION_PARAM);
+            //Compute the strength value and fitness for each chromosome
+            ComputeFitness(PA);
+            if (metrics != null)
+                metrics.EndFitness();
 
-                    //Crossover
-                    newP.add(Chromosome.DoCrossover(random, CROSSOVER_TYPE, parentA, parentB, CHOICE_PARAM));
-                }
+            //Select parents and apply genetic operators
+            for (int individual = 0; individual < POPULATION_SIZE; individual++)
+            {
+                Chromosome parentA = new Chromosome(GetChromosome(PA, random));
+                Chromosome parentB = new Chromosome(GetChromosome(PA, random));
+                if (metrics != null)
+                    metrics.EndSelection();
+
+                //Prune categories
+                parentA.DoPrune(random);
+                parentB.DoPrune(random);
+                if (metrics != null)
+                    metrics.EndPruning();
 
-                //Copy best chromosomes in terms of error and complexity to new population
-                Chromosome bestErrorRateChromo = PA.get(1);
-                Chromosome bestComplexityChromo = PA.get(1);
-                for (Chromosome chromo : PA)
+                //Mutation
+                parentA.DoMutation(random, MUTATION_PARAM);
+                parentB.DoMutation(random, MUTATION_PARAM);
+                if (metrics != null)
+                    metrics.EndMutation();
+
+                //Crossover
+                newP.add(Chromosome.DoCrossover(random, CROSSOVER_TYPE, parentA, parentB, CHOICE_PARAM));
+                if (metrics != null)
+                    metrics.EndCrossover();
+            }
+
+            //Copy best chromosomes in terms of error and complexity to new population
+            Chromosome bestErrorRateChromo = PA.get(1);
+            Chromosome bestComplexityChromo = PA.get(1);
+            for (Chromosome chromo : PA)
+            {
+                if (chromo.GetErrorRate() < bestErrorRateChromo.GetErrorRate())
+                    bestErrorRateChromo = chromo;
+                if (chromo.GetComplexity() < bestComplexityChromo.GetComplexity())
+                    bestComplexityChromo = chromo;
+            }
+            newP.add(bestErrorRateChromo);
+            newP.add(bestComplexityChromo);
+
+            //Copy temporary population
+            P = newP;
+            if (metrics != null)
+                metrics.Record();
+        }
+
+        /**
+         * Sends copies of up to MIGRANTS random members of A to every target, then adds the migrants
+         * of every source that is still running to P
+         * @param last true if this island stops after the migration
+         * @throws InterruptedException
+         */
+        private void Migrate(boolean last) throws InterruptedException
+        {
+            //Choose emigrants without replacement
+            ArrayList<Chromosome> members = A.GetMembers();
+            int count = Math.min(MIGRANTS, members.size());
+            for (int i = 0; i < count; i++)
+                Collections.swap(members, i, i + random.nextInt(members.size() - i));
+
+            for (int t = 0; t < targets.size(); t++)
+            {
+                //Each target gets its own copies, since evaluation updates node statistics
+                ArrayList<Chromosome> migrants = new ArrayList<Chromosome>();
+                for (int i = 0; i < count; i++)
+                    migrants.add(new Chromosome(members.get(i)));
+
+                //A target that stopped no longer takes from its queue
+                Migration migration = new Migration(migrants, last);
+                while (!outgoing.get(t).offer(migration, 10, TimeUnit.MILLISECONDS))
+                    if (targets.get(t).finished)
+                        break;
+            }
+
+            for (int s = 0; s < sources.size(); s++)
+            {
+                if (incoming.get(s) == null)
+                    continue;
+
+                //A source only stops after sending its last migration
+                Migration migration = incoming.get(s).poll(10, TimeUnit.MILLISECONDS);
+                while (migration == null && !sources.get(s).finished)
+                    migration = incoming.get(s).poll(10, TimeUnit.MILLISECONDS);
+                if (migration == null)
+                    migration = incoming.get(s).poll();
+                if (migration == null)
+                    throw new IllegalStateException("Island " + sources.get(s).id + " stopped without a last migration");
+
+                P.addAll(migration.migrants);
+                if (migration.last)
+                    incoming.set(s, null);
+            }
+        }
+
+        /**
+         * Serializes the state of the island: generation, counters, generator, P and A (as one
+         * table of chromosomes, since P may hold members of A), the sources that have stopped and
+         * the fitness cache
+         * @param generations number of generations completed
+         * @param stopped true if the island does not evolve further
+         * @return
+         */
+        private byte[] Save(int generations, boolean stopped)
+        {
+            try
+            {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                DataOutputStream stream = new DataOutputStream(buffer);
+                stream.writeInt(generations);
+                stream.writeBoolean(stopped);
+                stream.writeInt(lastUpdateGeneration);
+                Checkpoint.WriteRandom(stream, random);
+
+                ArrayList<Chromosome> members = A.GetMembers();
+                ArrayList<Chromosome> chromos = new ArrayList<Chromosome>(members);
+                IdentityHashMap<Chromosome, Integer> ids = new IdentityHashMap<Chromosome, Integer>();
+                for (Chromosome chromo : chromos)
+                    ids.put(chromo, ids.size());
+                for (Chromosome chromo : P)
                 {
-                    if (chromo.GetErrorRate() < bestErrorRateChromo.GetErrorRate())
-                        bestErrorRateChromo = chromo;
-                    if (chromo.GetComplexity() < bestComplexityChromo.GetComplexity())
-                        bestComplexityChromo = chromo;
+                    if (!ids.containsKey(chromo))
+                    {
+                        ids.put(chromo, ids.size());
+                        chromos.add(chromo);
+                    }
                 }
-                newP.add(bestErrorRateChromo);
-                newP.add(bestComplexityChromo);
 
-                //Copy temporary population
-                P = newP;
+                stream.writeInt(chromos.size());
+                for (Chromosome chromo : chromos)
+                    Checkpoint.WriteChromosome(stream, chromo);
+                stream.writeInt(members.size());
+                stream.writeInt(P.size());
+                for (Chromosome chromo : P)
+                    stream.writeInt(ids.get(chromo));
+
+                stream.writeInt(sources.size());
+                for (BlockingQueue<Migration> link : incoming)
+                    stream.writeBoolean(link == null);
 
-                //Break if A is not updated for 10 consecutive generations
-                if (generation - lastUpdateGeneration > 10)
-                    break;
+                stream.writeBoolean(fitnessCache != null);
+                if (fitnessCache != null)
+                    fitnessCache.Write(stream);
+
+                stream.flush();
+                return buffer.toByteArray();
+            } catch (IOException e)
+            {
+                throw new RuntimeException(e);
             }
+        }
 
-            System.out.println("---- Run: " + run + " - Results for Validation Set ----");
-            PrintResults(A);
-            System.out.println();
+        /**
+         * Restores the state written by {@link #Save(int, boolean)}
+         * @param state
+         */
+        private void Restore(byte[] state)
+        {
+            try
+            {
+                DataInputStream stream = new DataInputStream(new ByteArrayInputStream(state));
+                generation = stream.readInt();
+                finished = stream.readBoolean();
+                lastUpdateGeneration = stream.readInt();
+                random = Checkpoint.ReadRandom(stream);
 
-            //Testing data
-            DataReader testingDataReader = new DataReader(DATA, DataReader.Type.TESTING);
-            Map<Double[], Integer> testingSet = testingDataReader.GetInputMap();
+                Chromosome[] chromos = new Chromosome[stream.readInt()];
+                for (int i = 0; i < chromos.length; i++)
+                    chromos[i] = Checkpoint.ReadChromosome(stream);
 
-            //Compute objective values for each chromosome
-            for (Chromosome chromo : A)
-                chromo.ComputeObjectiveValues(testingSet);
+                //Members of A come first, in the order they were added
+                A = new ParetoArchive();
+                int memberCount = stream.readInt();
+                for (int i = 0; i < memberCount; i++)
+                    A.Add(chromos[i]);
+                P = new ArrayList<Chromosome>();
+                int size = stream.readInt();
+                for (int i = 0; i < size; i++)
+                    P.add(chromos[stream.readInt()]);
 
-            System.out.println("---- Run: " + run + " - Results for Testing Set ----");
-            PrintResults(A);
-            System.out.println();
+                if (stream.readInt() != sources.size())
+                    throw new IOException("Island " + id + " has a different number of sources");
+                for (int s = 0; s < sources.size(); s++)
+                    if (stream.readBoolean())
+                        incoming.set(s, null);
 
-            //Save archive
-            resultsMap.put(run, A);
+                fitnessCache = stream.readBoolean() ? FitnessCache.Read(stream) : null;
+            } catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
         }
-        //Results for all runs
-        System.out.println("---- Results for " + TOTAL_RUNS + " Runs ----");
-        System.out.println(String.format(" %5s%6s%6s%6s%6s", "size", "max", "min", "avg", "count"));
-        for (int complexity = 1; complexity < 10; complexity++)
+    }
+
+    /**
+     * Evolves a population for a single generation on a new island with an empty archive, as the
+     * first generation of a run does. Used by the benchmarks.
+     * @param population evaluated and modified in place
+     * @param random
+     * @param validationSet
+     * @return the next population
+     */
+    static ArrayList<Chromosome> EvolveGeneration(ArrayList<Chromosome> population, Random random, Dataset validationSet)
+    {
+        Island island = new Island(0, 0, random, validationSet, new PrintStream(new ByteArrayOutputStream()), null);
+        island.P.addAll(population);
+        island.Generation(0);
+        return island.P;
+    }
+
+    /**
+     * Derives the seed of a run from the master seed (SplitMix64)
+     * @param seed
+     * @param run
+     * @return
+     */
+    private static long GetRunSeed(long seed, int run)
+    {
+        long z = seed + (run + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Prints the updates, categories created and training time of each epoch, summed over the
+     * networks still training in that epoch
+     * @param population
+     * @param prefix
+     * @param out
+     */
+    private static void PrintTrainingStatistics(ArrayList<Chromosome> population, String prefix, PrintStream out)
+    {
+        for (int epoch = 0; ; epoch++)
         {
-            double min = Double.MAX_VALUE, max = 0, avg = 0;
-            int count = 0;
-            for (Map.Entry<Integer, ArrayList<Chromosome>> entry : resultsMap.entrySet())
+            int networks = 0;
+            long updates = 0;
+            long categoriesCreated = 0;
+            long nanos = 0;
+            for (Chromosome chromo : population)
             {
-                Chromosome chromo = null;
-                //Find chromosome with corresponding complexity
-                for (Chromosome c : entry.getValue())
-                    if (c.GetComplexity() == complexity)
-                        chromo = c;
-                if (chromo != null)
+                List<TrainingEpoch> epochs = chromo.GetFuzzyARTMAP().GetTrainingEpochs();
+                if (epoch < epochs.size())
                 {
-                    max = Math.max(max, chromo.GetErrorRate());
-                    min = Math.min(min, chromo.GetErrorRate());
-                    avg += chromo.GetErrorRate();
-                    count++;
+                    networks++;
+                    updates += epochs.get(epoch).GetUpdates();
+                    categoriesCreated += epochs.get(epoch).GetCategoriesCreated();
+                    nanos += epochs.get(epoch).GetNanos();
                 }
             }
-            if (count > 0)
-                System.out.println(String.format(" %5d %1.3f %1.3f %1.3f%6d", complexity, max, min, avg/(double)count, count));
+            if (networks == 0)
+                break;
+
+            out.println(prefix + " Epoch=" + (epoch + 1) + " Networks=" + networks + " Updates=" + updates
+                    + " CategoriesCreated=" + categoriesCreated + " TrainingMs=" + String.format("%.3f", nanos / 1e6));
         }
     }
 
-    private static void PrintResults(ArrayList<Chromosome> chromos)
+    private static void PrintResults(ArrayList<Chromosome> chromos, PrintStream out)
     {
         //Print chromosomes in A in increasing order of complexity
         for (int complexity = 0; complexity < 100; complexity++)
@@ -197,9 +968,235 @@ public class MOGFAM
             for (Chromosome chromo : chromos)
             {
                 if (chromo.GetComplexity() == complexity)
-                    System.out.println(" Complexity=" + chromo.GetComplexity() + " ErrorRate=" + chromo.GetErrorRate());
+                    out.println(" Complexity=" + chromo.GetComplexity() + " ErrorRate=" + chromo.GetErrorRate());
+            }
+        }
+    }
+
+    /**
+     * Computes the objective values of the chromosomes in parallel. Each distinct chromosome is
+     * evaluated once, since the same elite chromosome may appear more than once in a population.
+     * @param chromos
+     * @param dataSet
+     * @param cache cache of results for dataSet, or null
+     * @param archive archive whose members bound the error rates worth computing exactly, or null
+     * @return the number of patterns presented to validate the chromosomes not found in the cache
+     */
+    private static long ComputeObjectiveValues(ArrayList<Chromosome> chromos, final Dataset dataSet, final FitnessCache cache,
+                                               ParetoArchive archive)
+    {
+        //Cache lookups and updates happen in population order on this thread, so that the cache
+        //contents, and with them the results of a run, do not depend on the thread schedule
+        Set<Chromosome> distinct = Collections.newSetFromMap(new IdentityHashMap<Chromosome, Boolean>());
+        ArrayList<Chromosome> evaluated = new ArrayList<Chromosome>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Chromosome chromo : chromos)
+        {
+            if (!distinct.add(chromo) || (cache != null && chromo.LookupObjectiveValues(cache)))
+                continue;
+
+            //Members of the archive are never cut off, their own entry would bound them
+            final double errorBound = archive != null && !archive.Contains(chromo)
+                    ? archive.GetErrorBound(chromo.GetFuzzyARTMAP().Size()) : Double.POSITIVE_INFINITY;
+            evaluated.add(chromo);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    chromo.ComputeObjectiveValues(dataSet, null, errorBound);
+                    return null;
+                }
+            });
+        }
+
+        InvokeAll(tasks);
+
+        long samples = 0;
+        for (Chromosome chromo : evaluated)
+        {
+            samples += chromo.GetFuzzyARTMAP().GetValidationSamples();
+            if (cache != null)
+                chromo.CacheObjectiveValues(cache);
+        }
+
+        return samples;
+    }
+
+    /**
+     * Assigns the SPEA2 strength value and fitness of every chromosome in parallel. The fitness is
+     * the raw fitness (sum of the strength values of the chromosomes that dominate it) plus a
+     * density of 1/(d_k + 2), where d_k is the distance in objective space to the k-th nearest
+     * chromosome, k = sqrt(n), counting the chromosome itself. All pairwise distances are computed
+     * once into a matrix and d_k is found by selection rather than sorting.
+     * @param chromos
+     */
+    static void ComputeFitness(ArrayList<Chromosome> chromos)
+    {
+        final int n = chromos.size();
+        final int k = Math.min((int)Math.round(Math.sqrt(n)), n - 1);
+        final Chromosome[] population = chromos.toArray(new Chromosome[n]);
+        final double[] errorRates = new double[n];
+        final int[] complexities = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            errorRates[i] = population[i].GetErrorRate();
+            complexities[i] = population[i].GetComplexity();
+        }
+
+        //Rows are dealt round-robin to the tasks, since the upper triangle of the matrix is uneven
+        final int blocks = Math.min(n, 4 * EVALUATION_POOL.getParallelism());
+        final double[] distances = new double[n * n];
+
+        //Strength values and distances in objective space
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int block = 0; block < blocks; block++)
+        {
+            final int first = block;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = first; i < n; i += blocks)
+                    {
+                        int strengthValue = 0;
+                        for (int j = 0; j < n; j++)
+                            if (population[i].Dominates(population[j]))
+                                strengthValue++;
+                        population[i].SetStrengthValue(strengthValue);
+
+                        for (int j = i + 1; j < n; j++)
+                        {
+                            double dx = errorRates[j] - errorRates[i];
+                            double dy = complexities[j] - complexities[i];
+                            double distance = Math.sqrt(dx*dx + dy*dy);
+                            distances[i*n + j] = distance;
+                            distances[j*n + i] = distance;
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        InvokeAll(tasks);
+
+        //Raw fitness and density
+        tasks.clear();
+        for (int block = 0; block < blocks; block++)
+        {
+            final int first = block;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = first; i < n; i += blocks)
+                    {
+                        double rawFitness = 0;
+                        for (int j = 0; j < n; j++)
+                            if (population[j].Dominates(population[i]))
+                                rawFitness += population[j].GetStrengthValue();
+
+                        double kthDistance = Select(distances, i*n, n, k);
+                        population[i].SetFitness(rawFitness + 1.0/(kthDistance + 2.0));
+                    }
+                    return null;
+                }
+            });
+        }
+        InvokeAll(tasks);
+    }
+
+    /**
+     * Returns the k-th smallest of a[offset..offset+length) (quickselect), reordering that range
+     * @param a
+     * @param offset
+     * @param length
+     * @param k
+     * @return
+     */
+    private static double Select(double[] a, int offset, int length, int k)
+    {
+        int left = offset;
+        int right = offset + length - 1;
+        int target = offset + k;
+
+        while (left < right)
+        {
+            //Median of three pivot
+            int middle = (left + right) >>> 1;
+            double pivot = Math.max(Math.min(a[left], a[middle]), Math.min(Math.max(a[left], a[middle]), a[right]));
+
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (a[i] < pivot)
+                    i++;
+                while (a[j] > pivot)
+                    j--;
+                if (i <= j)
+                {
+                    double swap = a[i];
+                    a[i] = a[j];
+                    a[j] = swap;
+                    i++;
+                    j--;
+                }
             }
+
+            if (target <= j)
+                right = j;
+            else if (target >= i)
+                left = i;
+            else
+                return a[target];
+        }
+
+        return a[target];
+    }
+
+    /**
+     * Trains the initial population in parallel. Each member gets its own generator, seeded in
+     * order from the run generator, so the population does not depend on scheduling.
+     * @param trainingSet
+     * @param random
+     * @return
+     */
+    private static ArrayList<Chromosome> CreatePopulation(final Dataset trainingSet, Random random)
+    {
+        List<Callable<Chromosome>> tasks = new ArrayList<Callable<Chromosome>>();
+        for (int i = 0; i < POPULATION_SIZE; i++)
+        {
+            final long seed = random.nextLong();
+            tasks.add(new Callable<Chromosome>() {
+                @Override
+                public Chromosome call() {
+                    return new Chromosome(trainingSet, new Random(seed), CHOICE_PARAM, INDEX_CATEGORIES,
+                            TRAINING_MAX_EPOCHS, LEARNING_RATE, MATCH_TRACKING_EPSILON);
+                }
+            });
+        }
+
+        return InvokeAll(tasks);
+    }
+
+    /**
+     * Runs tasks on the evaluation pool and returns their results in task order
+     * @param tasks
+     * @return
+     */
+    private static <T> ArrayList<T> InvokeAll(List<Callable<T>> tasks)
+    {
+        ArrayList<T> results = new ArrayList<T>(tasks.size());
+        try
+        {
+            for (Future<T> future : EVALUATION_POOL.invokeAll(tasks))
+                results.add(future.get());
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
         }
+        return results;
     }
 
     private static Chromosome GetChromosome(ArrayList<Chromosome> chromosomes, Random random)
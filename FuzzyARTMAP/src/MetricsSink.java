@@ -0,0 +1,97 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Writes {@link GenerationMetrics} to a file, one line per generation, as JSON lines if the file
+ * name ends in .jsonl and as CSV with a header line otherwise. Times are in milliseconds. Lines are
+ * flushed as they are written, so the file can be followed while a run is in progress. Write may
+ * be called concurrently.
+ */
+public class MetricsSink
+{
+    private static String[] COLUMNS = {
+            "run", "island", "generation", "totalMs", "evaluationMs", "archiveUpdateMs", "fitnessMs",
+            "selectionMs", "pruningMs", "mutationMs", "crossoverMs", "archiveSize", "meanCategories",
+            "validationSamples", "samplesPerSecond" };
+
+    private Path path;
+    private boolean json;
+    private BufferedWriter writer;
+
+    /**
+     * Opens the file
+     * @param path
+     * @param append add to the lines of an existing file, such as when a run is resumed
+     * @throws IOException
+     */
+    public MetricsSink(Path path, boolean append) throws IOException
+    {
+        this.path = path;
+        json = path.getFileName().toString().endsWith(".jsonl");
+
+        boolean empty = !append || !Files.exists(path) || Files.size(path) == 0;
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        if (empty && !json)
+        {
+            writer.write(String.join(",", COLUMNS));
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    public synchronized void Write(GenerationMetrics metrics)
+    {
+        Object[] values = {
+                metrics.GetRun(), metrics.GetIsland(), metrics.GetGeneration(),
+                Millis(metrics.GetTotalNanos()), Millis(metrics.GetEvaluationNanos()),
+                Millis(metrics.GetArchiveUpdateNanos()), Millis(metrics.GetFitnessNanos()),
+                Millis(metrics.GetSelectionNanos()), Millis(metrics.GetPruningNanos()),
+                Millis(metrics.GetMutationNanos()), Millis(metrics.GetCrossoverNanos()),
+                metrics.GetArchiveSize(), String.format(Locale.ROOT, "%.3f", metrics.GetMeanCategories()),
+                metrics.GetValidationSamples(), String.format(Locale.ROOT, "%.1f", metrics.GetSamplesPerSecond()) };
+
+        StringBuilder line = new StringBuilder(json ? "{" : "");
+        for (int i = 0; i < COLUMNS.length; i++)
+        {
+            if (i > 0)
+                line.append(',');
+            if (json)
+                line.append('"').append(COLUMNS[i]).append("\":");
+            line.append(values[i]);
+        }
+        if (json)
+            line.append('}');
+
+        try
+        {
+            writer.write(line.toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e)
+        {
+            System.out.println("IOException occurred while writing " + path + ".");
+        }
+    }
+
+    public synchronized void Close()
+    {
+        try
+        {
+            writer.close();
+        } catch (IOException e)
+        {
+            System.out.println("IOException occurred while closing " + path + ".");
+        }
+    }
+
+    private static String Millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
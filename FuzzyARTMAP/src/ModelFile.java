@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A file of trained Fuzzy ARTMAP networks, such as the archive of a run, laid out so that it can
+ * be memory mapped and used without parsing. Every section starts on a multiple of 8 bytes, so the
+ * weight matrix of each network can be viewed in place as a {@link DoubleBuffer}, and a network is
+ * loaded with bulk copies of its weight rows.
+ *
+ * The file is little endian:
+ *   magic "MGFM", version, network count, padding, offset of each network (longs),
+ *   and for each network:
+ *     dimensions, categories, label count, padding, choice parameter, baseline vigilance,
+ *     label table (label count ints), padding to a multiple of 8 bytes,
+ *     weights (categories x dimensions doubles, row-major),
+ *     label of each category (categories indices into the label table)
+ */
+public class ModelFile
+{
+    private static int MAGIC = 0x4D46474D; //"MGFM" little endian
+    private static int VERSION = 1;
+
+    private ByteBuffer buffer;
+    private long[] offsets;
+
+    /**
+     * Maps a model file
+     * @param path
+     * @throws IOException if the file is not a model file of this version
+     */
+    public ModelFile(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Model file " + path + " is larger than 2 GB");
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        } finally
+        {
+            channel.close();
+        }
+
+        if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException(path + " is not a version " + VERSION + " model file");
+
+        offsets = new long[buffer.getInt(8)];
+        for (int i = 0; i < offsets.length; i++)
+            offsets[i] = buffer.getLong(16 + 8 * i);
+    }
+
+    /**
+     * Returns the number of networks in the file
+     * @return
+     */
+    public int Size()
+    {
+        return offsets.length;
+    }
+
+    public int Dimensions(int model)
+    {
+        return buffer.getInt(Offset(model));
+    }
+
+    /**
+     * Returns the number of categories of a network
+     * @param model
+     * @return
+     */
+    public int Categories(int model)
+    {
+        return buffer.getInt(Offset(model) + 4);
+    }
+
+    public double GetChoiceParam(int model)
+    {
+        return buffer.getDouble(Offset(model) + 16);
+    }
+
+    public double GetBaselineVigilanceParam(int model)
+    {
+        return buffer.getDouble(Offset(model) + 24);
+    }
+
+    /**
+     * Returns the label of a category of a network
+     * @param model
+     * @param category
+     * @return
+     */
+    public int GetLabel(int model, int category)
+    {
+        int offset = Offset(model);
+        int labelCount = buffer.getInt(offset + 8);
+        int index = buffer.getInt(LabelsOffset(model) + 4 * category);
+        assert index < labelCount;
+
+        return buffer.getInt(offset + 32 + 4 * index);
+    }
+
+    /**
+     * Returns a read-only view of the weight matrix of a network in the mapped file, category i
+     * occupies [i*Dimensions(model), (i+1)*Dimensions(model))
+     * @param model
+     * @return
+     */
+    public DoubleBuffer GetWeights(int model)
+    {
+        ByteBuffer weights = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        weights.position(WeightsOffset(model));
+        weights.limit(WeightsOffset(model) + 8 * Categories(model) * Dimensions(model));
+        return weights.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Creates a Fuzzy ARTMAP from a network in the file
+     * @param model
+     * @return
+     */
+    public FuzzyARTMAP Load(int model)
+    {
+        int dims = Dimensions(model);
+        int categories = Categories(model);
+        FuzzyARTMAP fartmap = new FuzzyARTMAP(GetChoiceParam(model), GetBaselineVigilanceParam(model));
+
+        double[] weights = new double[categories * dims];
+        GetWeights(model).get(weights);
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        for (int i = 0; i < categories; i++)
+            nodes.Add(weights, i * dims, dims, GetLabel(model, i));
+
+        return fartmap;
+    }
+
+    private int Offset(int model)
+    {
+        return (int)offsets[model];
+    }
+
+    private int WeightsOffset(int model)
+    {
+        return (int)Align(Offset(model) + 32 + 4L * buffer.getInt(Offset(model) + 8));
+    }
+
+    private int LabelsOffset(int model)
+    {
+        return WeightsOffset(model) + 8 * Categories(model) * Dimensions(model);
+    }
+
+    /**
+     * Writes networks to a model file, replacing it atomically
+     * @param path
+     * @param models
+     * @throws IOException
+     */
+    public static void Write(Path path, List<FuzzyARTMAP> models) throws IOException
+    {
+        //Section sizes and offsets
+        long[] offsets = new long[models.size()];
+        long position = Align(16 + 8L * models.size());
+        for (int i = 0; i < models.size(); i++)
+        {
+            offsets[i] = position;
+            position += Size(models.get(i));
+        }
+        if (position > Integer.MAX_VALUE)
+            throw new IOException("Models do not fit in a 2 GB model file");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)position).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(models.size()).putInt(0);
+        for (long offset : offsets)
+            buffer.putLong(offset);
+
+        for (int i = 0; i < models.size(); i++)
+        {
+            FuzzyARTMAP fartmap = models.get(i);
+            CategoryStore nodes = fartmap.GetCategoryStore();
+            int dims = nodes.Dimensions();
+            int size = nodes.Size();
+
+            //Label table
+            TreeSet<Integer> distinctLabels = new TreeSet<Integer>();
+            for (int j = 0; j < size; j++)
+                distinctLabels.add(nodes.GetLabel(j));
+            int[] labelTable = new int[distinctLabels.size()];
+            int n = 0;
+            for (int label : distinctLabels)
+                labelTable[n++] = label;
+
+            buffer.position((int)offsets[i]);
+            buffer.putInt(dims).putInt(size).putInt(labelTable.length).putInt(0);
+            buffer.putDouble(fartmap.GetChoiceParam()).putDouble(fartmap.GetBaselineVigilanceParam());
+            for (int label : labelTable)
+                buffer.putInt(label);
+            buffer.position((int)Align(buffer.position()));
+
+            buffer.asDoubleBuffer().put(nodes.GetWeights(), 0, size * dims);
+            buffer.position(buffer.position() + 8 * size * dims);
+            for (int j = 0; j < size; j++)
+                buffer.putInt(Arrays.binarySearch(labelTable, nodes.GetLabel(j)));
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try
+        {
+            buffer.clear();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } finally
+        {
+            channel.close();
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the number of bytes a network takes in the file
+     * @param fartmap
+     * @return
+     */
+    private static long Size(FuzzyARTMAP fartmap)
+    {
+        CategoryStore nodes = fartmap.GetCategoryStore();
+        TreeSet<Integer> distinctLabels = new TreeSet<Integer>();
+        for (int j = 0; j < nodes.Size(); j++)
+            distinctLabels.add(nodes.GetLabel(j));
+
+        long size = Align(32 + 4L * distinctLabels.size());
+        size += 8L * nodes.Size() * nodes.Dimensions();
+        size += 4L * nodes.Size();
+        return Align(size);
+    }
+
+    private static long Align(long position)
+    {
+        return (position + 7) & ~7L;
+    }
+}
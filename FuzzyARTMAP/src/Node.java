@@ -1,39 +1,29 @@
-import java.util.Map;
-
 /**
  * Created by vic on 4/3/14.
+ *
+ * A node is a view of a single category in a {@link CategoryStore}. Views are only valid until
+ * the store is structurally modified (nodes added or removed).
  */
-public class Node implements Comparable<Node>
+public class Node
 {
-    private int label;
-    private Double[] pattern;
-
-    private double activation;
-    private int accuracyCount;
-    private int frequencyCount;
-    private double accuracy;
-    private double frequency;
-
-    public Node(Double[] pattern, int label)
-    {
-        this.pattern = pattern;
-        this.label = label;
-    }
+    private CategoryStore store;
+    private int index;
 
-    public Node(Node node)
+    public Node(CategoryStore store, int index)
     {
-        label = node.GetLabel();
-        pattern = node.GetPattern();
-        activation = node.GetActivation();
-        accuracyCount = node.GetAccuracyCount();
-        frequencyCount = node.GetFrequencyCount();
-        accuracy = node.GetAccuracy();
-        frequency = node.GetFrequency();
+        this.store = store;
+        this.index = index;
     }
 
-    public int compareTo(Node b)
+    /**
+     * Creates a detached node backed by its own single category store
+     * @param pattern
+     * @param label
+     */
+    public Node(double[] pattern, int label)
     {
-        return Double.compare(b.GetActivation(), this.activation);
+        store = new CategoryStore(pattern.length);
+        index = store.Add(pattern, label);
     }
 
     @Override
@@ -42,95 +32,107 @@ public class Node implements Comparable<Node>
         if (b == null) return false;
         if (!(b instanceof Node)) return false;
 
-        for (int i = 0; i < ((Node)b).GetPattern().length; i++)
-            if (((Node)b).GetPattern()[i].compareTo(pattern[i]) != 0)
+        Node node = (Node)b;
+        for (int i = 0; i < node.Dimensions(); i++)
+            if (Double.compare(node.GetWeight(i), GetWeight(i)) != 0)
                 return false;
 
-        return ((Node)b).GetLabel() == label;
+        return node.GetLabel() == GetLabel();
     }
 
     @Override
     public int hashCode()
     {
-        return pattern.hashCode() + label;
+        int result = GetLabel();
+        for (int i = 0; i < Dimensions(); i++)
+        {
+            long bits = Double.doubleToLongBits(GetWeight(i));
+            result = 31*result + (int)(bits ^ (bits >>> 32));
+        }
+        return result;
     }
 
-    public Double[] GetPattern()
+    public CategoryStore GetStore()
     {
-        return pattern;
+        return store;
     }
 
-    public int GetLabel()
+    public int GetIndex()
+    {
+        return index;
+    }
+
+    public int Dimensions()
+    {
+        return store.Dimensions();
+    }
+
+    public double GetWeight(int i)
+    {
+        return store.GetWeight(index, i);
+    }
+
+    /**
+     * Returns a copy of the weights of this node
+     * @return
+     */
+    public double[] GetPattern()
     {
-        return label;
+        return store.GetPattern(index);
     }
 
-    public double GetActivation()
+    public int GetLabel()
     {
-        return activation;
+        return store.GetLabel(index);
     }
 
     public void SetAccuracy(double accuracy)
     {
-        this.accuracy = accuracy;
+        store.SetAccuracy(index, accuracy);
     }
 
     public double GetAccuracy()
     {
-        return accuracy;
+        return store.GetAccuracy(index);
     }
 
     public int GetAccuracyCount()
     {
-        return accuracyCount;
+        return store.GetAccuracyCount(index);
     }
 
     public void IncrementAccuracyCount()
     {
-        accuracyCount++;
+        store.IncrementAccuracyCount(index);
     }
 
     public void SetFrequency(double frequency)
     {
-        this.frequency = frequency;
+        store.SetFrequency(index, frequency);
     }
 
     public double GetFrequency()
     {
-        return frequency;
+        return store.GetFrequency(index);
     }
 
     public int GetFrequencyCount()
     {
-        return frequencyCount;
+        return store.GetFrequencyCount(index);
     }
 
     public void IncrementFrequencyCount()
     {
-        frequencyCount++;
+        store.IncrementFrequencyCount(index);
     }
 
     public double GetConfidenceFactor()
     {
-        return 0.5*accuracy + 0.5*frequency;
-    }
-
-    public void ComputeActivation(Map.Entry<Double[], Integer> input, double choiceParam)
-    {
-        activation = FuzzyMath.sum(FuzzyMath.fuzzyMin(input.getKey(), pattern))/(choiceParam + FuzzyMath.sum(pattern));
-    }
-
-    public void SetActivation(double newActivation)
-    {
-        this.activation = newActivation;
+        return store.GetConfidenceFactor(index);
     }
 
     public void Reset()
     {
-        activation = 0;
-        accuracyCount = 0;
-        frequencyCount = 0;
-        accuracy = 0;
-        frequency = 0;
+        store.Reset(index);
     }
 }
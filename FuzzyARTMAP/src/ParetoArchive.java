@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The external set of nondominated chromosomes for the two objectives complexity and error rate.
+ *
+ * No two members of the set have the same complexity, since the one with the lower error rate would
+ * dominate the other, so the members are kept in a map sorted by complexity in which the error rate
+ * strictly decreases. A candidate is dominated (or duplicates a member) if and only if the member
+ * with the largest complexity not above its own has an error rate not above its own, and the
+ * members it dominates form a contiguous run starting at its complexity. Members are also kept in
+ * insertion order, which is the order {@link #GetMembers()} returns them in.
+ */
+public class ParetoArchive
+{
+    private TreeMap<Integer, Chromosome> front = new TreeMap<Integer, Chromosome>();
+    private LinkedHashSet<Chromosome> members = new LinkedHashSet<Chromosome>();
+
+    /**
+     * Adds a chromosome if it is not dominated by a member and no member has the same objective
+     * values, removing the members it dominates
+     * @param chromo
+     * @return true if the chromosome was added
+     */
+    public boolean Add(Chromosome chromo)
+    {
+        int complexity = chromo.GetComplexity();
+        double errorRate = chromo.GetErrorRate();
+
+        //Member with the lowest error rate among those that are not more complex
+        Map.Entry<Integer, Chromosome> floor = front.floorEntry(complexity);
+        if (floor != null && floor.getValue().GetErrorRate() <= errorRate)
+            return false;
+
+        //Remove dominated members, the run of members at least as complex that are not more accurate
+        NavigableMap<Integer, Chromosome> tail = front.tailMap(complexity, true);
+        while (!tail.isEmpty() && tail.firstEntry().getValue().GetErrorRate() >= errorRate)
+            members.remove(tail.pollFirstEntry().getValue());
+
+        front.put(complexity, chromo);
+        members.add(chromo);
+
+        return true;
+    }
+
+    /**
+     * Returns the error rate above which a chromosome of the given complexity is dominated by a
+     * simpler member, positive infinity if no member is simpler
+     * @param complexity
+     * @return
+     */
+    public double GetErrorBound(int complexity)
+    {
+        Map.Entry<Integer, Chromosome> lower = front.lowerEntry(complexity);
+        return lower != null ? lower.getValue().GetErrorRate() : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns true if the chromosome itself (not merely one with the same objective values) is a
+     * member
+     * @param chromo
+     * @return
+     */
+    public boolean Contains(Chromosome chromo)
+    {
+        return members.contains(chromo);
+    }
+
+    public int Size()
+    {
+        return members.size();
+    }
+
+    /**
+     * Returns the members in the order they were added
+     * @return
+     */
+    public ArrayList<Chromosome> GetMembers()
+    {
+        return new ArrayList<Chromosome>(members);
+    }
+
+    /**
+     * Returns the members in increasing order of complexity
+     * @return
+     */
+    public ArrayList<Chromosome> GetFront()
+    {
+        return new ArrayList<Chromosome>(front.values());
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * The category selected by a Fuzzy ARTMAP for a single input
+ */
+public class Prediction
+{
+    /**
+     * Label reported when no category passes the vigilance test
+     */
+    public static final int NO_LABEL = Integer.MIN_VALUE;
+
+    private int category;
+    private int label;
+    private double activation;
+
+    public Prediction(int category, int label, double activation)
+    {
+        this.category = category;
+        this.label = label;
+        this.activation = activation;
+    }
+
+    /**
+     * Returns the index of the winning category, or -1 if no category passes the vigilance test
+     * @return
+     */
+    public int GetCategory()
+    {
+        return category;
+    }
+
+    public int GetLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Returns the choice value of the winning category
+     * @return
+     */
+    public double GetActivation()
+    {
+        return activation;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Statistics of one pass of a Fuzzy ARTMAP over its training set: the number of existing categories
+ * whose weights were updated, the number of categories created, the wall time of the pass and the
+ * number of categories after it
+ */
+public class TrainingEpoch
+{
+    private int epoch;
+    private int updates;
+    private int categoriesCreated;
+    private long nanos;
+    private int categories;
+
+    public TrainingEpoch(int epoch)
+    {
+        this.epoch = epoch;
+    }
+
+    void AddUpdate()
+    {
+        updates++;
+    }
+
+    void AddCategory()
+    {
+        categoriesCreated++;
+    }
+
+    /**
+     * Ends the epoch
+     * @param nanos wall time of the epoch
+     * @param categories number of categories after the epoch
+     */
+    void End(long nanos, int categories)
+    {
+        this.nanos = nanos;
+        this.categories = categories;
+    }
+
+    /**
+     * Returns the number of the epoch, starting at 1
+     * @return
+     */
+    public int GetEpoch()
+    {
+        return epoch;
+    }
+
+    /**
+     * Returns the number of committed categories whose weights were updated
+     * @return
+     */
+    public int GetUpdates()
+    {
+        return updates;
+    }
+
+    public int GetCategoriesCreated()
+    {
+        return categoriesCreated;
+    }
+
+    public long GetNanos()
+    {
+        return nanos;
+    }
+
+    public int GetCategories()
+    {
+        return categories;
+    }
+}